@@ -0,0 +1,61 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * Tracks the deliveries of a channel that are processed out of order by
+ * several workers and acknowledges them with as few
+ * {@code basic.ack(multiple=true)} frames as possible.
+ *
+ * A completed delivery is only acknowledged once every delivery with a lower
+ * tag has been settled, since a multiple ack covers all outstanding
+ * deliveries up to its tag. All acks and nacks of the channel have to go
+ * through the tracker.
+ */
+public class AckTracker {
+	private final Channel channel;
+	/* delivered, but neither completed nor rejected */
+	private final TreeSet<Long> pending = new TreeSet<>();
+	/* completed, but not yet acknowledged to the broker */
+	private final TreeSet<Long> completed = new TreeSet<>();
+
+	public AckTracker(Channel channel) {
+		this.channel = channel;
+	}
+
+	public synchronized void delivered(long deliveryTag) {
+		pending.add(deliveryTag);
+	}
+
+	public synchronized void complete(Collection<Long> deliveryTags) throws IOException {
+		for (Long deliveryTag : deliveryTags) {
+			if (pending.remove(deliveryTag)) {
+				completed.add(deliveryTag);
+			}
+		}
+		ackCompleted();
+	}
+
+	public synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+		if (pending.remove(deliveryTag)) {
+			channel.basicNack(deliveryTag, false, requeue);
+			ackCompleted();
+		}
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	private void ackCompleted() throws IOException {
+		Long ackTag = pending.isEmpty() ? (completed.isEmpty() ? null : completed.last()) : completed.lower(pending.first());
+		if (ackTag != null) {
+			channel.basicAck(ackTag, true);
+			completed.headSet(ackTag, true).clear();
+		}
+	}
+}
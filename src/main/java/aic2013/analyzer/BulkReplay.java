@@ -0,0 +1,405 @@
+package aic2013.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.jdbc.Driver;
+import org.neo4j.jdbc.Neo4jConnection;
+
+import aic2013.analyzer.cache.LruCache;
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.metrics.PipelineMetrics.Stage;
+import aic2013.analyzer.persistence.BatchingTopicWriter;
+import aic2013.analyzer.persistence.FileTopicStore;
+import aic2013.analyzer.persistence.Neo4jTopicStore;
+import aic2013.analyzer.persistence.PersistenceException;
+import aic2013.analyzer.persistence.TimedTopicStore;
+import aic2013.analyzer.persistence.TopicRelation;
+import aic2013.analyzer.persistence.TopicStore;
+import aic2013.analyzer.stage.Gazetteer;
+import aic2013.analyzer.stage.LdaStage;
+import aic2013.analyzer.stage.StagePlan;
+import aic2013.common.entities.Topic;
+
+/**
+ * Runs archived tweets through the extraction and write stages of
+ * {@link TweetConsumer} without a broker. The input files hold one tweet JSON
+ * per line and may be gzipped; directories are replayed file by file.
+ *
+ * One thread reads the files and hands batches of lines to the extraction
+ * workers, which parse, extract and write them like the consumer does. The
+ * reader runs a batch itself while all workers are busy and their queue is
+ * full, so reading never gets far ahead of extraction.
+ *
+ * Relations are written to Neo4j, or appended to a local file if
+ * REPLAY_OUTPUT_FILE is set. Tweets that cannot be parsed or extracted are
+ * counted and skipped; a batch that fails to extract is extracted tweet by
+ * tweet, like the consumer does. Writes that fail are retried, and if they
+ * still fail the replay exits with status 1 once all files are replayed.
+ */
+public class BulkReplay {
+	private static Logger logger = Logger.getLogger(BulkReplay.class.getName());
+
+	private static final String NEO4J_JDBC_URL = "jdbc:neo4j://localhost:7474";
+	private static final String EXTRACTION_THREADS = String.valueOf(Runtime.getRuntime().availableProcessors());
+	private static final String LDA_INFERENCE_ITERATIONS = "10";
+	private static final String LDA_INFERENCE_BURN_IN = "5";
+	private static final String LDA_TOPICS_PER_TWEET = "2";
+	private static final String LDA_TOP_WORDS = "5";
+	private static final String BATCH_SIZE = "100";
+	private static final String WRITE_BATCH_SIZE = "500";
+	private static final String WRITE_INTERVAL_MS = "1000";
+	private static final String KNOWN_TOPICS_CACHE_SIZE = "100000";
+	private static final String KNOWN_RELATIONS_CACHE_SIZE = "500000";
+	private static final String RESULT_CACHE_SIZE = "50000";
+	private static final String WRITE_BACKLOG_LIMIT = "5000";
+	private static final String CLASSIFIER_PATH = TopicExtractorImpl.CLASSIFIER_PATH;
+	private static final String REPORT_INTERVAL_MS = "10000";
+	private static final String EXTRACTION_STAGES = StagePlan.DEFAULT_STAGES;
+	private static final String EXTRACTION_SHORT_CIRCUIT_TOPICS = "0";
+	private static final String GAZETTEER_FALLBACK = "false";
+	private static final String WRITE_RETRIES = "3";
+	private static final String WRITE_RETRY_BACKOFF_MS = "1000";
+	private static final long MAX_WRITE_RETRY_BACKOFF_MILLIS = 60000;
+	private static final long WRITE_BACKLOG_POLL_MILLIS = 10;
+
+	private final BatchingTopicWriter topicWriter;
+	private final int batchSize;
+	private final int writeBacklogLimit;
+	private final ThreadPoolExecutor extractionExecutor;
+	private final ExecutorService stageExecutor;
+	private final ThreadLocal<TopicExtractor> extractor;
+	private final RetryPolicy writeRetryPolicy;
+	private final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor();
+	/* the writes that are neither stored nor given up on, including those waiting for a retry */
+	private final AtomicLong pendingWrites = new AtomicLong();
+	private final TweetParser tweetParser = new TweetParser();
+	private final AtomicLong read = new AtomicLong();
+	private final AtomicLong extracted = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong failedWrites = new AtomicLong();
+	private final AtomicLong lostRelations = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BulkReplay <tweet file or directory>...");
+			System.exit(1);
+		}
+		String neo4jJdbcUrl = TweetConsumer.getProperty("NEO4J_JDBC_URL", NEO4J_JDBC_URL);
+		String outputFile = TweetConsumer.getProperty("REPLAY_OUTPUT_FILE", null);
+		int extractionThreads = Integer.parseInt(TweetConsumer.getProperty("EXTRACTION_THREADS", EXTRACTION_THREADS));
+		String ldaModelFile = TweetConsumer.getProperty("LDA_MODEL_FILE", null);
+		int batchSize = Integer.parseInt(TweetConsumer.getProperty("BATCH_SIZE", BATCH_SIZE));
+		int writeBatchSize = Integer.parseInt(TweetConsumer.getProperty("WRITE_BATCH_SIZE", WRITE_BATCH_SIZE));
+		long writeIntervalMillis = Long.parseLong(TweetConsumer.getProperty("WRITE_INTERVAL_MS", WRITE_INTERVAL_MS));
+		int knownTopicsCacheSize = Integer.parseInt(TweetConsumer.getProperty("KNOWN_TOPICS_CACHE_SIZE", KNOWN_TOPICS_CACHE_SIZE));
+		int knownRelationsCacheSize = Integer.parseInt(TweetConsumer.getProperty("KNOWN_RELATIONS_CACHE_SIZE", KNOWN_RELATIONS_CACHE_SIZE));
+		int resultCacheSize = Integer.parseInt(TweetConsumer.getProperty("RESULT_CACHE_SIZE", RESULT_CACHE_SIZE));
+		int writeBacklogLimit = Integer.parseInt(TweetConsumer.getProperty("WRITE_BACKLOG_LIMIT", WRITE_BACKLOG_LIMIT));
+		String classifierPath = TweetConsumer.getProperty("CLASSIFIER_PATH", CLASSIFIER_PATH);
+		String classifierCacheDir = TweetConsumer.getProperty("CLASSIFIER_CACHE_DIR", null);
+		long reportIntervalMillis = Long.parseLong(TweetConsumer.getProperty("REPORT_INTERVAL_MS", REPORT_INTERVAL_MS));
+		String extractionStages = TweetConsumer.getProperty("EXTRACTION_STAGES", EXTRACTION_STAGES);
+		int shortCircuitTopics = Integer.parseInt(TweetConsumer.getProperty("EXTRACTION_SHORT_CIRCUIT_TOPICS",
+				EXTRACTION_SHORT_CIRCUIT_TOPICS));
+		String gazetteerFile = TweetConsumer.getProperty("GAZETTEER_FILE", null);
+		boolean gazetteerFallback = Boolean.parseBoolean(TweetConsumer.getProperty("GAZETTEER_FALLBACK", GAZETTEER_FALLBACK));
+		int writeRetries = Integer.parseInt(TweetConsumer.getProperty("WRITE_RETRIES", WRITE_RETRIES));
+		long writeRetryBackoffMillis = Long.parseLong(TweetConsumer.getProperty("WRITE_RETRY_BACKOFF_MS", WRITE_RETRY_BACKOFF_MS));
+
+		List<File> files = new ArrayList<>();
+		for (String arg : args) {
+			addFiles(new File(arg), files);
+		}
+
+		ClassifierRegistry classifiers = new ClassifierRegistry(classifierPath,
+				classifierCacheDir == null ? null : new File(classifierCacheDir));
+		ClassifierRegistry.setShared(classifiers);
+		if (StagePlan.requiresClassifier(extractionStages, gazetteerFallback)) {
+			classifiers.preload();
+		}
+
+		Gazetteer gazetteer = gazetteerFile == null ? null : Gazetteer.load(new File(gazetteerFile));
+		PretrainedTopicModel topicModel = null;
+		if (ldaModelFile != null) {
+			topicModel = PretrainedTopicModel.load(new File(ldaModelFile),
+					Integer.parseInt(TweetConsumer.getProperty("LDA_INFERENCE_ITERATIONS", LDA_INFERENCE_ITERATIONS)),
+					Integer.parseInt(TweetConsumer.getProperty("LDA_INFERENCE_BURN_IN", LDA_INFERENCE_BURN_IN)),
+					Integer.parseInt(TweetConsumer.getProperty("LDA_TOPICS_PER_TWEET", LDA_TOPICS_PER_TWEET)),
+					Integer.parseInt(TweetConsumer.getProperty("LDA_TOP_WORDS", LDA_TOP_WORDS)));
+		}
+
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.register();
+		StagePlan stagePlan = new StagePlan(extractionStages, shortCircuitTopics, classifiers, gazetteer,
+				gazetteerFallback, topicModel, metrics,
+				LdaStage.MAX_ALPHABET_SIZE);
+		TopicStore store;
+		if (outputFile != null) {
+			store = new FileTopicStore(new File(outputFile));
+		} else {
+			Neo4jConnection neo4j = new Driver().connect(neo4jJdbcUrl, new Properties());
+			store = new Neo4jTopicStore(neo4j);
+		}
+		BatchingTopicWriter topicWriter = new BatchingTopicWriter(new TimedTopicStore(store, metrics.timer(Stage.PERSIST)),
+				writeBatchSize, writeIntervalMillis, knownTopicsCacheSize, knownRelationsCacheSize);
+		LruCache<String, Set<Topic>> resultCache = resultCacheSize > 0 ? new LruCache<String, Set<Topic>>(resultCacheSize)
+				: null;
+
+		System.out.println("Replaying " + files.size() + " files with the following configuration:");
+		System.out.println("\tOutput: " + (outputFile == null ? neo4jJdbcUrl : outputFile));
+		System.out.println("\tExtraction threads: " + extractionThreads);
+		System.out.println("\tExtraction stages: " + stagePlan);
+		if (gazetteer != null) {
+			System.out.println("\tGazetteer: " + gazetteerFile + ", " + gazetteer.size() + " names"
+					+ (gazetteerFallback ? ", falling back to the classifier" : ""));
+		}
+		System.out.println("\tLDA model: " + (ldaModelFile == null ? "trained per tweet" : ldaModelFile));
+		System.out.println("\tBatches: " + batchSize + " tweets");
+		System.out.println("\tWrite batches: " + writeBatchSize + " relations or " + writeIntervalMillis + " ms, backlog limit "
+				+ writeBacklogLimit);
+		System.out.println("\tWrite retries: " + writeRetries + ", backoff " + writeRetryBackoffMillis + " ms");
+		System.out.println("\tResult cache: " + resultCacheSize + " tweets");
+
+		BulkReplay replay = new BulkReplay(topicWriter, extractionThreads, stagePlan, batchSize, writeBacklogLimit,
+				resultCache, new RetryPolicy(writeRetries, writeRetryBackoffMillis, MAX_WRITE_RETRY_BACKOFF_MILLIS));
+		long started = System.nanoTime();
+		ScheduledExecutorService reporter = replay.startReporting(reportIntervalMillis, started);
+		try {
+			for (File file : files) {
+				replay.replay(file);
+			}
+		} finally {
+			replay.close();
+			reporter.shutdownNow();
+			if (store instanceof FileTopicStore) {
+				((FileTopicStore) store).close();
+			}
+		}
+		replay.report(started, 0, started);
+		if (replay.failedWrites.get() > 0) {
+			System.err.println(replay.failedWrites.get() + " writes with " + replay.lostRelations.get()
+					+ " relations failed after all retries");
+			System.exit(1);
+		}
+	}
+
+	private static void addFiles(File file, List<File> files) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (File child : children) {
+					addFiles(child, files);
+				}
+			}
+		} else {
+			files.add(file);
+		}
+	}
+
+	/**
+	 * @param topicWriter the stage the extracted topics are persisted through
+	 * @param stagePlan the extraction stages every worker runs
+	 * @param batchSize the number of tweets that are extracted together
+	 * @param writeBacklogLimit the number of relations waiting for the write
+	 *            stage above which the workers wait for it
+	 * @param resultCache the extraction results that are kept for duplicate
+	 *            tweets, null to disable the cache
+	 * @param writeRetryPolicy the retries of relations that could not be
+	 *            stored
+	 */
+	public BulkReplay(BatchingTopicWriter topicWriter, int extractionThreads, final StagePlan stagePlan,
+			int batchSize, int writeBacklogLimit, final LruCache<String, Set<Topic>> resultCache,
+			RetryPolicy writeRetryPolicy) {
+		this.topicWriter = topicWriter;
+		this.writeRetryPolicy = writeRetryPolicy;
+		this.batchSize = batchSize;
+		this.writeBacklogLimit = writeBacklogLimit;
+		stageExecutor = Executors.newFixedThreadPool(extractionThreads);
+		extractor = new ThreadLocal<TopicExtractor>() {
+			@Override
+			protected TopicExtractor initialValue() {
+				TopicExtractor topicExtractor = new TopicExtractorImpl(stagePlan, new ExtractionTracer(0), stageExecutor);
+				if (resultCache != null) {
+					topicExtractor = new CachingTopicExtractor(topicExtractor, resultCache);
+				}
+				return topicExtractor;
+			}
+		};
+		/* the reader runs batches itself while the queue is full */
+		extractionExecutor = new ThreadPoolExecutor(extractionThreads, extractionThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(extractionThreads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Hands all tweets of the file to the extraction workers.
+	 */
+	public void replay(File file) throws IOException {
+		logger.log(Level.INFO, "Replaying {0}", file);
+		try (NdjsonReader reader = new NdjsonReader(file)) {
+			List<byte[]> batch = new ArrayList<>(batchSize);
+			byte[] line;
+			while ((line = reader.readLine()) != null) {
+				read.incrementAndGet();
+				batch.add(line);
+				if (batch.size() >= batchSize) {
+					submit(batch);
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				submit(batch);
+			}
+		}
+	}
+
+	/**
+	 * Waits for all submitted tweets to be extracted and written, including
+	 * the retries of failed writes.
+	 */
+	public void close() {
+		extractionExecutor.shutdown();
+		try {
+			while (!extractionExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.log(Level.INFO, "Waiting for {0} batches", extractionExecutor.getQueue().size());
+			}
+			while (pendingWrites.get() > 0) {
+				Thread.sleep(WRITE_BACKLOG_POLL_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		stageExecutor.shutdown();
+		retryTimer.shutdownNow();
+		topicWriter.close();
+	}
+
+	private void submit(final List<byte[]> batch) {
+		extractionExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				processBatch(batch);
+			}
+		});
+	}
+
+	private void processBatch(List<byte[]> lines) {
+		List<Tweet> tweets = new ArrayList<>(lines.size());
+		List<String> texts = new ArrayList<>(lines.size());
+		for (byte[] line : lines) {
+			try {
+				Tweet tweet = tweetParser.parse(line);
+				tweets.add(tweet);
+				texts.add(tweet.getText());
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.FINE, "Skipping a line that is no tweet", e);
+				skipped.incrementAndGet();
+			}
+		}
+
+		List<Set<Topic>> topics = TweetConsumer.extractTopics(extractor.get(), texts);
+		List<TopicRelation> relations = new ArrayList<>();
+		int extractedTweets = 0;
+		for (int i = 0; i < tweets.size(); i++) {
+			if (topics.get(i) == null) {
+				skipped.incrementAndGet();
+				continue;
+			}
+			TweetConsumer.addRelations(tweets.get(i), topics.get(i), relations);
+			extractedTweets++;
+		}
+		awaitWriteBacklog();
+		pendingWrites.incrementAndGet();
+		write(relations, 1);
+		extracted.addAndGet(extractedTweets);
+	}
+
+	private void write(final List<TopicRelation> relations, final int attempt) {
+		topicWriter.write(relations, new BatchingTopicWriter.Callback() {
+			@Override
+			public void written() {
+				pendingWrites.decrementAndGet();
+			}
+
+			@Override
+			public void failed(PersistenceException e) {
+				if (writeRetryPolicy.shouldRetry(attempt)) {
+					logger.log(Level.WARNING, "Could not store " + relations.size() + " relations, retrying", e);
+					retryTimer.schedule(new Runnable() {
+						@Override
+						public void run() {
+							write(relations, attempt + 1);
+						}
+					}, writeRetryPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS);
+					return;
+				}
+				logger.log(Level.SEVERE, "Could not store " + relations.size() + " relations after " + attempt
+						+ " attempts", e);
+				failedWrites.incrementAndGet();
+				lostRelations.addAndGet(relations.size());
+				pendingWrites.decrementAndGet();
+			}
+		});
+	}
+
+	/* the writer queues relations without a limit, so the workers must not outrun it */
+	private void awaitWriteBacklog() {
+		try {
+			while (topicWriter.getPendingCount() > writeBacklogLimit) {
+				Thread.sleep(WRITE_BACKLOG_POLL_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private ScheduledExecutorService startReporting(long intervalMillis, final long started) {
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		reporter.scheduleAtFixedRate(new Runnable() {
+			private long lastReport = started;
+			private long lastExtracted;
+
+			@Override
+			public void run() {
+				long now = System.nanoTime();
+				lastExtracted = report(started, lastExtracted, lastReport);
+				lastReport = now;
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		return reporter;
+	}
+
+	/**
+	 * Prints the progress and the throughput overall and since the previous
+	 * report.
+	 *
+	 * @return the number of tweets extracted so far
+	 */
+	private long report(long started, long lastExtracted, long lastReport) {
+		long now = System.nanoTime();
+		long extractedNow = extracted.get();
+		System.out.println(String.format("Read %d, extracted %d, skipped %d tweets, %d failed writes: %.0f tweets/s, %.0f tweets/s overall",
+				read.get(), extractedNow, skipped.get(), failedWrites.get(),
+				perSecond(extractedNow - lastExtracted, now - lastReport), perSecond(extractedNow, now - started)));
+		return extractedNow;
+	}
+
+	private static double perSecond(long count, long nanos) {
+		return nanos <= 0 ? 0 : count * 1e9 / nanos;
+	}
+}
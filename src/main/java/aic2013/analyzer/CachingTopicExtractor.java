@@ -0,0 +1,85 @@
+package aic2013.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import aic2013.analyzer.cache.LruCache;
+import aic2013.analyzer.filter.BaseFilter;
+import aic2013.analyzer.filter.CompiledTextFilter;
+import aic2013.analyzer.filter.GlobalPrefixFilter;
+import aic2013.analyzer.filter.PrefixFilter;
+import aic2013.analyzer.filter.TextFilter;
+import aic2013.common.entities.Topic;
+
+/**
+ * Decorates an extractor with a cache of extraction results keyed by the
+ * text without the retweet marker, mentions and links. Retweets and other
+ * duplicates reduce to the same key as the original, so they skip extraction
+ * as long as the original is cached. Hashtags are part of the key, since they
+ * are topics of their own.
+ *
+ * The cache may be shared by the extractors of several threads. Callers get
+ * their own copy of a cached topic set. A {@link PartialTopicSet} is returned
+ * but not cached, so that the next duplicate is extracted again.
+ */
+public class CachingTopicExtractor implements TopicExtractor {
+	private final TopicExtractor decoratedExtractor;
+	private final LruCache<String, Set<Topic>> cache;
+	private final TextFilter filter = CompiledTextFilter.compile(new PrefixFilter("@", new PrefixFilter("http",
+			new GlobalPrefixFilter("RT", false, new BaseFilter()))));
+
+	public CachingTopicExtractor(TopicExtractor decoratedExtractor, LruCache<String, Set<Topic>> cache) {
+		this.decoratedExtractor = decoratedExtractor;
+		this.cache = cache;
+	}
+
+	@Override
+	public Set<Topic> extract(String input) throws ExtractionException {
+		return extractAll(Collections.singletonList(input)).get(0);
+	}
+
+	@Override
+	public List<Set<Topic>> extractAll(List<String> inputs) throws ExtractionException {
+		List<String> keys = new ArrayList<>(inputs.size());
+		Map<String, Set<Topic>> results = new LinkedHashMap<>();
+		/* inputs that are neither cached nor duplicates within the batch */
+		Map<String, String> missedInputs = new LinkedHashMap<>();
+		for (String input : inputs) {
+			String key = filter.filter(input);
+			keys.add(key);
+			if (results.containsKey(key) || missedInputs.containsKey(key)) {
+				continue;
+			}
+			Set<Topic> topics = cache.get(key);
+			if (topics != null) {
+				results.put(key, topics);
+			} else {
+				missedInputs.put(key, input);
+			}
+		}
+
+		if (!missedInputs.isEmpty()) {
+			List<Set<Topic>> extracted = decoratedExtractor.extractAll(new ArrayList<>(missedInputs.values()));
+			int i = 0;
+			for (String key : missedInputs.keySet()) {
+				Set<Topic> topics = Collections.unmodifiableSet(new HashSet<>(extracted.get(i)));
+				if (!(extracted.get(i) instanceof PartialTopicSet)) {
+					cache.put(key, topics);
+				}
+				results.put(key, topics);
+				i++;
+			}
+		}
+
+		List<Set<Topic>> result = new ArrayList<>(inputs.size());
+		for (String key : keys) {
+			result.add(new HashSet<>(results.get(key)));
+		}
+		return result;
+	}
+}
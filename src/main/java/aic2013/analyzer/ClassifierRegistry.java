@@ -0,0 +1,268 @@
+package aic2013.analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import edu.stanford.nlp.ie.AbstractSequenceClassifier;
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Loads the CRF classifier once per process and hands the same instance to
+ * every extractor. The classifier is only read during extraction, so it can
+ * be shared by all threads.
+ *
+ * The classifier path is looked up as a file relative to the working
+ * directory, as a resource on the class path, and as a file next to the
+ * application jar, in this order.
+ *
+ * Given a cache directory, a gzipped classifier is decompressed into it once,
+ * and later processes map the decompressed copy into memory instead of
+ * inflating the model again. The copy is named after the size and the
+ * modification time of the model it was made from, so a changed model gets a
+ * new copy.
+ */
+public class ClassifierRegistry {
+	private static Logger logger = Logger.getLogger(ClassifierRegistry.class.getName());
+
+	private static ClassifierRegistry shared = new ClassifierRegistry(TopicExtractorImpl.CLASSIFIER_PATH, null);
+
+	private final String path;
+	private final File cacheDir;
+	private AbstractSequenceClassifier<CoreLabel> classifier;
+	private long loadMillis = -1;
+
+	/**
+	 * @param path the path of the serialized classifier, gzipped if it ends
+	 *            with ".gz"
+	 * @param cacheDir the directory the decompressed classifier is kept in,
+	 *            or null to always read the classifier from its path
+	 */
+	public ClassifierRegistry(String path, File cacheDir) {
+		this.path = path;
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Creates a registry for a classifier that has already been loaded.
+	 */
+	public ClassifierRegistry(AbstractSequenceClassifier<CoreLabel> classifier) {
+		this(null, null);
+		this.classifier = classifier;
+		loadMillis = 0;
+	}
+
+	public static synchronized ClassifierRegistry getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the registry the classifier of the process is loaded from.
+	 * Has to be called before the first extractor is created.
+	 */
+	public static synchronized void setShared(ClassifierRegistry registry) {
+		shared = registry;
+	}
+
+	/**
+	 * Starts loading the classifier in the background, so that it loads while
+	 * the process is connecting to its services.
+	 */
+	public void preload() {
+		Thread loader = new Thread("classifier-loader") {
+			@Override
+			public void run() {
+				try {
+					getClassifier();
+				} catch (RuntimeException e) {
+					/* thrown again by the next call of getClassifier() */
+					logger.log(Level.WARNING, "Could not preload the classifier", e);
+				}
+			}
+		};
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	/**
+	 * @return the classifier, which is loaded by the first call
+	 */
+	public synchronized AbstractSequenceClassifier<CoreLabel> getClassifier() {
+		if (classifier == null) {
+			long start = System.nanoTime();
+			try {
+				classifier = load();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException("Could not load the classifier " + path, e);
+			}
+			loadMillis = (System.nanoTime() - start) / 1000000;
+			logger.log(Level.INFO, "Loaded the classifier " + path + " in " + loadMillis + " ms");
+		}
+		return classifier;
+	}
+
+	/**
+	 * @return the time it took to load the classifier, -1 if it has not been
+	 *         loaded yet
+	 */
+	public synchronized long getLoadMillis() {
+		return loadMillis;
+	}
+
+	private AbstractSequenceClassifier<CoreLabel> load() throws IOException, ClassNotFoundException {
+		URL source = resolve();
+		boolean gzipped = path.endsWith(".gz");
+		if (gzipped && cacheDir != null) {
+			File cached = cachedCopy(source);
+			try (RandomAccessFile file = new RandomAccessFile(cached, "r")) {
+				ByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+				return CRFClassifier.getClassifier(new ByteBufferInputStream(mapped));
+			}
+		}
+
+		try (InputStream in = open(source, gzipped)) {
+			return CRFClassifier.getClassifier(in);
+		}
+	}
+
+	private URL resolve() throws IOException {
+		File file = new File(path);
+		if (file.isFile()) {
+			return file.toURI().toURL();
+		}
+		if (!file.isAbsolute()) {
+			URL resource = ClassifierRegistry.class.getClassLoader().getResource(path.replace(File.separatorChar, '/'));
+			if (resource != null) {
+				return resource;
+			}
+			try {
+				File codeSource = new File(ClassifierRegistry.class.getProtectionDomain().getCodeSource().getLocation()
+						.toURI());
+				File besideJar = new File(codeSource.getParentFile(), path);
+				if (besideJar.isFile()) {
+					return besideJar.toURI().toURL();
+				}
+			} catch (URISyntaxException | SecurityException | NullPointerException e) {
+				/* the code source is not a local file */
+			}
+		}
+		throw new IOException("Classifier " + path + " not found in the working directory, on the class path or beside the application");
+	}
+
+	private static InputStream open(URL source, boolean gzipped) throws IOException {
+		InputStream in = new BufferedInputStream(source.openStream(), 1 << 16);
+		return gzipped ? new GZIPInputStream(in, 1 << 16) : in;
+	}
+
+	/**
+	 * @return the decompressed copy of the classifier in the cache directory,
+	 *         which is created if it does not exist yet
+	 */
+	private File cachedCopy(URL source) throws IOException {
+		String name = new File(path).getName();
+		name = name.substring(0, name.length() - ".gz".length());
+		File cached = new File(cacheDir, name + "-" + version(source) + ".ser");
+		if (cached.isFile()) {
+			return cached;
+		}
+
+		if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			throw new IOException("Could not create the classifier cache directory " + cacheDir);
+		}
+		/* concurrent processes each write their own copy and the last rename wins */
+		File partial = File.createTempFile(name, ".partial", cacheDir);
+		try {
+			try (InputStream in = open(source, true); OutputStream out = new FileOutputStream(partial)) {
+				byte[] buffer = new byte[1 << 16];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+			}
+			if (!partial.renameTo(cached) && !cached.isFile()) {
+				throw new IOException("Could not move the decompressed classifier to " + cached);
+			}
+		} finally {
+			partial.delete();
+		}
+		logger.log(Level.INFO, "Cached the decompressed classifier in " + cached);
+		return cached;
+	}
+
+	/**
+	 * @return the length and the modification time of the source, which
+	 *         identify the version of the classifier
+	 */
+	private static String version(URL source) throws IOException {
+		if ("file".equals(source.getProtocol())) {
+			try {
+				File file = new File(source.toURI());
+				return file.length() + "-" + file.lastModified();
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				/* not a plain file path, asked through a connection below */
+			}
+		}
+		URLConnection connection = source.openConnection();
+		try {
+			return connection.getContentLengthLong() + "-" + connection.getLastModified();
+		} finally {
+			/* asking for the headers opens the stream of the connection */
+			try {
+				connection.getInputStream().close();
+			} catch (IOException e) {
+				logger.log(Level.FINE, "Could not close " + source, e);
+			}
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+	}
+}
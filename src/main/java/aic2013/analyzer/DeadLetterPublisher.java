@@ -0,0 +1,171 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * Moves tweets that cannot be processed to a durable dead-letter queue, so
+ * that they neither block the prefetch of the consumer nor get lost. The
+ * reason and the number of attempts are kept in the message headers.
+ *
+ * Messages are published to the queue directly instead of relying on a
+ * dead-letter exchange, which would require redeclaring the existing
+ * extraction queue with different arguments.
+ *
+ * The channel is in confirm mode, and {@link #publish(byte[], String, int)}
+ * only returns once the broker has confirmed the message, so that the
+ * original delivery is never acknowledged for a dead letter the broker
+ * dropped. Messages are published one at a time, but their confirms are
+ * awaited concurrently, so a worker does not wait for the confirms of the
+ * dead letters of other workers. A channel that is closed, e.g. by an error,
+ * fails the confirms still pending on it and is reopened by the next publish.
+ */
+public class DeadLetterPublisher {
+	public static final String REASON_HEADER = "x-failure-reason";
+	public static final String ATTEMPTS_HEADER = "x-attempts";
+	private static final int PERSISTENT = 2;
+	private static final long CONFIRM_TIMEOUT_MILLIS = 10000;
+
+	private final Connection connection;
+	private final String queueName;
+	private Channel channel;
+	private PendingConfirms confirms;
+
+	/**
+	 * @param connection the connection a channel only used for dead letters
+	 *            is opened on
+	 */
+	public DeadLetterPublisher(Connection connection, String queueName) throws IOException {
+		this.connection = connection;
+		this.queueName = queueName;
+		openChannel();
+	}
+
+	private void openChannel() throws IOException {
+		Channel newChannel = connection.createChannel();
+		PendingConfirms newConfirms = new PendingConfirms();
+		newChannel.addConfirmListener(newConfirms);
+		newChannel.addShutdownListener(newConfirms);
+		newChannel.queueDeclare(queueName, true, false, false, null);
+		newChannel.confirmSelect();
+		channel = newChannel;
+		confirms = newConfirms;
+	}
+
+	/**
+	 * @throws IOException if the message could not be published or was not
+	 *             confirmed by the broker
+	 */
+	public void publish(byte[] body, String reason, int attempts) throws IOException {
+		Map<String, Object> headers = new HashMap<>();
+		headers.put(REASON_HEADER, reason);
+		headers.put(ATTEMPTS_HEADER, attempts);
+		AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().headers(headers)
+				.deliveryMode(PERSISTENT).timestamp(new Date()).build();
+
+		Confirm confirm = new Confirm();
+		PendingConfirms publishedOn;
+		long sequenceNumber;
+		/* the sequence numbers of the confirms follow the order of the publishes on the channel */
+		synchronized (this) {
+			if (!channel.isOpen()) {
+				openChannel();
+			}
+			publishedOn = confirms;
+			sequenceNumber = channel.getNextPublishSeqNo();
+			publishedOn.pending.put(sequenceNumber, confirm);
+			try {
+				channel.basicPublish("", queueName, properties, body);
+			} catch (IOException | RuntimeException e) {
+				publishedOn.pending.remove(sequenceNumber);
+				throw e;
+			}
+		}
+
+		try {
+			if (!confirm.settled.await(CONFIRM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				throw new IOException("The broker did not confirm a dead letter in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the confirm of a dead letter", e);
+		} finally {
+			publishedOn.pending.remove(sequenceNumber);
+		}
+		if (!confirm.acked) {
+			throw new IOException("The broker rejected a dead letter");
+		}
+	}
+
+	public String getQueueName() {
+		return queueName;
+	}
+
+	public synchronized void close() throws IOException {
+		if (channel.isOpen()) {
+			channel.close();
+		}
+	}
+
+	private static class Confirm {
+		private final CountDownLatch settled = new CountDownLatch(1);
+		private volatile boolean acked;
+
+		private void settle(boolean ack) {
+			acked = ack;
+			settled.countDown();
+		}
+	}
+
+	/**
+	 * The confirms a channel still owes, by the sequence number of their
+	 * message.
+	 */
+	private static class PendingConfirms implements ConfirmListener, ShutdownListener {
+		private final ConcurrentNavigableMap<Long, Confirm> pending = new ConcurrentSkipListMap<>();
+
+		@Override
+		public void handleAck(long deliveryTag, boolean multiple) {
+			settle(deliveryTag, multiple, true);
+		}
+
+		@Override
+		public void handleNack(long deliveryTag, boolean multiple) {
+			settle(deliveryTag, multiple, false);
+		}
+
+		@Override
+		public void shutdownCompleted(ShutdownSignalException cause) {
+			settle(Long.MAX_VALUE, true, false);
+		}
+
+		private void settle(long deliveryTag, boolean multiple, boolean ack) {
+			if (!multiple) {
+				Confirm confirm = pending.remove(deliveryTag);
+				if (confirm != null) {
+					confirm.settle(ack);
+				}
+				return;
+			}
+			for (Map.Entry<Long, Confirm> confirm = pending.firstEntry(); confirm != null
+					&& confirm.getKey() <= deliveryTag; confirm = pending.firstEntry()) {
+				if (pending.remove(confirm.getKey(), confirm.getValue())) {
+					confirm.getValue().settle(ack);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package aic2013.analyzer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aic2013.common.entities.Topic;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Logs how a sample of the tweets was extracted: the filtered text, every
+ * token with its CRF label and the resulting topics. Each sampled tweet is
+ * logged as one JSON record to the {@value #LOGGER_NAME} logger, so the trace
+ * can be routed and parsed separately from the other logs.
+ *
+ * The tracer is stateless and may be shared by all extractors.
+ */
+public class ExtractionTracer {
+	public static final String LOGGER_NAME = "aic2013.analyzer.trace";
+	private static Logger logger = Logger.getLogger(LOGGER_NAME);
+
+	private final double sampleRate;
+
+	/**
+	 * @param sampleRate the fraction of tweets that are traced, 0 disables
+	 *            tracing
+	 */
+	public ExtractionTracer(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @return whether the next tweet should be traced
+	 */
+	public boolean sample() {
+		return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate
+				&& logger.isLoggable(Level.INFO);
+	}
+
+	public void trace(String input, String filteredInput, List<List<CoreLabel>> sentences, Set<Topic> topics) {
+		StringBuilder record = new StringBuilder("{\"tweet\":");
+		appendString(record, input);
+		record.append(",\"filtered\":");
+		appendString(record, filteredInput);
+		record.append(",\"tokens\":[");
+		boolean first = true;
+		/* no tokens if NER did not run on the tweet */
+		for (List<CoreLabel> sentence : sentences == null ? Collections.<List<CoreLabel>> emptyList() : sentences) {
+			for (CoreLabel word : sentence) {
+				if (!first) {
+					record.append(',');
+				}
+				first = false;
+				record.append("{\"word\":");
+				appendString(record, word.word());
+				record.append(",\"label\":");
+				appendString(record, word.get(CoreAnnotations.AnswerAnnotation.class));
+				record.append('}');
+			}
+		}
+		record.append("],\"topics\":[");
+		first = true;
+		for (Topic topic : topics) {
+			if (!first) {
+				record.append(',');
+			}
+			first = false;
+			record.append('[');
+			for (int i = 0; i < topic.getName().length; i++) {
+				if (i > 0) {
+					record.append(',');
+				}
+				appendString(record, topic.getName()[i]);
+			}
+			record.append(']');
+		}
+		record.append("]}");
+		logger.info(record.toString());
+	}
+
+	private static void appendString(StringBuilder record, String value) {
+		if (value == null) {
+			record.append("null");
+			return;
+		}
+		record.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				record.append("\\\"");
+				break;
+			case '\\':
+				record.append("\\\\");
+				break;
+			case '\n':
+				record.append("\\n");
+				break;
+			case '\r':
+				record.append("\\r");
+				break;
+			case '\t':
+				record.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					record.append(String.format("\\u%04x", (int) c));
+				} else {
+					record.append(c);
+				}
+			}
+		}
+		record.append('"');
+	}
+}
@@ -0,0 +1,99 @@
+package aic2013.analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a file with one JSON document per line, gzipped or plain, as the raw
+ * bytes of each line. The file is read through one large buffer, so lines
+ * are copied once from the buffer and never decoded to strings. Empty lines
+ * are skipped.
+ *
+ * Gzipped files are recognized by their magic number rather than their name.
+ */
+public class NdjsonReader implements Closeable {
+	private static final int BUFFER_SIZE = 4 << 20;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private boolean eof;
+
+	public NdjsonReader(File file) throws IOException {
+		if (isGzipped(file)) {
+			InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16), 1 << 16);
+			channel = Channels.newChannel(in);
+		} else {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		buffer.flip();
+	}
+
+	private static boolean isGzipped(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return in.read() == 0x1f && in.read() == 0x8b;
+		}
+	}
+
+	/**
+	 * @return the next non-empty line without its line terminator, or null at
+	 *         the end of the file
+	 */
+	public byte[] readLine() throws IOException {
+		while (true) {
+			byte[] array = buffer.array();
+			int start = buffer.position();
+			for (int i = start; i < buffer.limit(); i++) {
+				if (array[i] == '\n') {
+					buffer.position(i + 1);
+					int end = i > start && array[i - 1] == '\r' ? i - 1 : i;
+					if (end > start) {
+						return Arrays.copyOfRange(array, start, end);
+					}
+					start = i + 1;
+				}
+			}
+			buffer.position(start);
+
+			if (eof) {
+				if (!buffer.hasRemaining()) {
+					return null;
+				}
+				/* the last line has no terminator */
+				byte[] line = Arrays.copyOfRange(array, buffer.position(), buffer.limit());
+				buffer.position(buffer.limit());
+				return line;
+			}
+			fill();
+		}
+	}
+
+	private void fill() throws IOException {
+		buffer.compact();
+		if (!buffer.hasRemaining()) {
+			throw new IOException("Line longer than " + BUFFER_SIZE + " bytes");
+		}
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				eof = true;
+				break;
+			}
+		}
+		buffer.flip();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,20 @@
+package aic2013.analyzer;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * The topics of a tweet that some stages skipped, because they ran out of
+ * their time budget or the tweet had enough topics already. The topics are
+ * valid, but another extraction of the same text may find more, so they must
+ * not be cached as the result for the text.
+ */
+public class PartialTopicSet extends HashSet<Topic> {
+	private static final long serialVersionUID = 1L;
+
+	public PartialTopicSet(Collection<Topic> topics) {
+		super(topics);
+	}
+}
@@ -0,0 +1,78 @@
+package aic2013.analyzer;
+
+/**
+ * Sizes the prefetch of the consumer channels from the observed state of the
+ * pipeline.
+ *
+ * A delivery stays unacknowledged while its batch fills, while the batch is
+ * extracted and while its relations wait for the write stage. By Little's law
+ * the prefetch has to cover the tweets in all of these states: one filling
+ * batch per channel, one batch per worker, and the tweets the workers extract
+ * during the observed wait for the write stage. Batches queued for a worker
+ * mean that more tweets are prefetched than the workers keep up with.
+ *
+ * While the write stage has more relations pending than it can take, the
+ * prefetch drops to a single batch per channel, so that the broker stops
+ * delivering until the writes catch up.
+ */
+public class PrefetchController {
+	private final int batchSize;
+	private final int workers;
+	private final int channels;
+	private final int maxPrefetch;
+	private final int writeBacklogLimit;
+
+	/**
+	 * @param maxPrefetch the largest prefetch of a channel
+	 * @param writeBacklogLimit the number of pending relations above which
+	 *            the write stage is considered saturated
+	 */
+	public PrefetchController(int batchSize, int workers, int channels, int maxPrefetch, int writeBacklogLimit) {
+		this.batchSize = batchSize;
+		this.workers = workers;
+		this.channels = channels;
+		this.maxPrefetch = Math.max(batchSize, maxPrefetch);
+		this.writeBacklogLimit = writeBacklogLimit;
+	}
+
+	/**
+	 * @return the prefetch of a channel before anything has been observed
+	 */
+	public int initialPrefetch() {
+		return clamp(perChannel(batchSize * (workers + channels)));
+	}
+
+	/**
+	 * @param current the current prefetch of a channel
+	 * @param batchMillis the mean time a worker takes for a batch, 0 if
+	 *            unknown
+	 * @param writeWaitMillis the mean time a batch waits for the write stage
+	 * @param queuedBatches the number of batches waiting for a worker
+	 * @param writeBacklog the number of relations pending in the write stage
+	 * @return the next prefetch of a channel, which is at most twice or half
+	 *         the current one
+	 */
+	public int nextPrefetch(int current, double batchMillis, double writeWaitMillis, int queuedBatches, int writeBacklog) {
+		if (writeBacklog > writeBacklogLimit) {
+			return batchSize;
+		}
+
+		double target = batchSize * (workers + channels);
+		if (batchMillis > 0) {
+			double tweetsPerMilli = workers * batchSize / batchMillis;
+			target += tweetsPerMilli * writeWaitMillis;
+		}
+		target -= queuedBatches * batchSize;
+
+		int next = clamp(perChannel(target));
+		return Math.max(current / 2, Math.min(current * 2, next));
+	}
+
+	private int perChannel(double total) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.ceil(total / channels));
+	}
+
+	private int clamp(int prefetch) {
+		return Math.max(batchSize, Math.min(maxPrefetch, prefetch));
+	}
+}
@@ -0,0 +1,123 @@
+package aic2013.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import aic2013.common.entities.Topic;
+import cc.mallet.topics.ParallelTopicModel;
+import cc.mallet.topics.TopicInferencer;
+import cc.mallet.types.Alphabet;
+import cc.mallet.types.FeatureSequence;
+import cc.mallet.types.Instance;
+
+/**
+ * An LDA model trained offline (see {@link TopicModelTrainer}) that is used
+ * to infer the topics of single tweets instead of training a new model per
+ * tweet.
+ *
+ * The model is read-only after loading and can be shared between threads.
+ * The {@link TopicInferencer} keeps sampling state, so every thread has to
+ * create its own one with {@link #createInferencer()}; inferencers share the
+ * count arrays of the model.
+ */
+public class PretrainedTopicModel {
+	private final ParallelTopicModel model;
+	private final String[][] topWords;
+	private final int numIterations;
+	private final int burnIn;
+	private final int maxTopics;
+
+	/**
+	 * @param model the trained model
+	 * @param numIterations sampling iterations per inferred tweet
+	 * @param burnIn iterations that are discarded before the distribution is
+	 *            sampled
+	 * @param maxTopics the maximum number of dominant topics per tweet
+	 * @param numTopWords the number of words that describe a topic
+	 */
+	public PretrainedTopicModel(ParallelTopicModel model, int numIterations,
+			int burnIn, int maxTopics, int numTopWords) {
+		if (numIterations <= burnIn) {
+			throw new IllegalArgumentException(
+					"The number of iterations must exceed the burn-in period");
+		}
+		this.model = model;
+		this.numIterations = numIterations;
+		this.burnIn = burnIn;
+		this.maxTopics = maxTopics;
+
+		Object[][] topicStrings = model.getTopWords(numTopWords);
+		topWords = new String[topicStrings.length][];
+		for (int i = 0; i < topicStrings.length; i++) {
+			topWords[i] = new String[topicStrings[i].length];
+			for (int j = 0; j < topWords[i].length; j++) {
+				topWords[i][j] = (String) topicStrings[i][j];
+			}
+		}
+
+		/* words the model was not trained on carry no topic information */
+		model.getAlphabet().stopGrowth();
+	}
+
+	public static PretrainedTopicModel load(File modelFile, int numIterations,
+			int burnIn, int maxTopics, int numTopWords) throws IOException {
+		try {
+			return new PretrainedTopicModel(ParallelTopicModel.read(modelFile),
+					numIterations, burnIn, maxTopics, numTopWords);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Could not read topic model from "
+					+ modelFile, e);
+		}
+	}
+
+	/**
+	 * @return the alphabet the model was trained with; tweets must be piped
+	 *         with this alphabet
+	 */
+	public Alphabet getAlphabet() {
+		return model.getAlphabet();
+	}
+
+	public TopicInferencer createInferencer() {
+		return model.getInferencer();
+	}
+
+	/**
+	 * Maps an instance to the top words of its dominant topics. A topic is
+	 * dominant if its sampled probability exceeds the uniform distribution.
+	 */
+	public Set<Topic> infer(TopicInferencer inferencer, Instance instance) {
+		Set<Topic> result = new HashSet<>();
+		if (((FeatureSequence) instance.getData()).getLength() == 0) {
+			return result;
+		}
+
+		final double[] distribution = inferencer.getSampledDistribution(
+				instance, numIterations, 1, burnIn);
+		Integer[] topics = new Integer[distribution.length];
+		for (int i = 0; i < topics.length; i++) {
+			topics[i] = i;
+		}
+		Arrays.sort(topics, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(distribution[b], distribution[a]);
+			}
+		});
+
+		double uniform = 1.0 / distribution.length;
+		for (int i = 0; i < topics.length && i < maxTopics; i++) {
+			if (distribution[topics[i]] <= uniform) {
+				break;
+			}
+			result.add(new Topic(topWords[topics[i]].clone()));
+		}
+		return result;
+	}
+}
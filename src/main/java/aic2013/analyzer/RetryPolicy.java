@@ -0,0 +1,38 @@
+package aic2013.analyzer;
+
+/**
+ * Bounded retries with exponential backoff for failures that may be
+ * transient, such as a write to an unavailable database.
+ */
+public class RetryPolicy {
+	private final int maxRetries;
+	private final long backoffMillis;
+	private final long maxBackoffMillis;
+
+	/**
+	 * @param maxRetries the number of retries after the first attempt
+	 * @param backoffMillis the delay before the first retry, which doubles
+	 *            with every further retry
+	 * @param maxBackoffMillis the longest delay before a retry
+	 */
+	public RetryPolicy(int maxRetries, long backoffMillis, long maxBackoffMillis) {
+		this.maxRetries = maxRetries;
+		this.backoffMillis = backoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	/**
+	 * @param attempt the number of the attempt that failed, starting at 1
+	 */
+	public boolean shouldRetry(int attempt) {
+		return attempt <= maxRetries;
+	}
+
+	/**
+	 * @param attempt the number of the attempt that failed, starting at 1
+	 * @return the delay before the next attempt
+	 */
+	public long backoffMillis(int attempt) {
+		return Math.min(maxBackoffMillis, backoffMillis * (1L << Math.min(attempt - 1, 30)));
+	}
+}
@@ -0,0 +1,113 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+/**
+ * Splits the extraction queue into shards, so that all tweets of a user are
+ * extracted by the same consumer and its caches and trend counts see all of
+ * them. Every shard is a queue of its own, named after the extraction queue
+ * and the shard index, e.g. "tweet-extraction.3". The queues are bound to a
+ * durable direct exchange by their shard index, and producers publish a tweet
+ * to the exchange with the shard of its user as routing key.
+ *
+ * The shard of a user is chosen by jump consistent hashing, so that adding a
+ * shard only moves the users of 1/n of the traffic to the new shard, rather
+ * than reshuffling all users like a plain modulo would.
+ *
+ * With a single shard, the extraction queue is used as it is, without an
+ * exchange, as before sharding.
+ */
+public class ShardRouter {
+	private final String queueName;
+	private final String exchangeName;
+	private final int shardCount;
+
+	/**
+	 * @param queueName the name of the extraction queue the shard queues are
+	 *            named after
+	 * @param exchangeName the exchange the shard queues are bound to
+	 * @param shardCount the number of shards, 1 for an unsharded queue
+	 */
+	public ShardRouter(String queueName, String exchangeName, int shardCount) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("There has to be at least one shard, not " + shardCount);
+		}
+		this.queueName = queueName;
+		this.exchangeName = exchangeName;
+		this.shardCount = shardCount;
+	}
+
+	public boolean isSharded() {
+		return shardCount > 1;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * @return the queue of the shard
+	 */
+	public String queueName(int shard) {
+		checkShard(shard);
+		return isSharded() ? queueName + "." + shard : queueName;
+	}
+
+	/**
+	 * @return the shard the tweets of the user are routed to
+	 */
+	public int shardOf(long userId) {
+		return jumpHash(userId, shardCount);
+	}
+
+	/**
+	 * Declares the queue of the shard, and the exchange and the binding that
+	 * route the tweets of the shard to it.
+	 *
+	 * @return the name of the queue
+	 */
+	public String declare(Channel channel, int shard) throws IOException {
+		String shardQueueName = queueName(shard);
+		channel.queueDeclare(shardQueueName, true, false, false, null);
+		if (isSharded()) {
+			channel.exchangeDeclare(exchangeName, "direct", true);
+			channel.queueBind(shardQueueName, exchangeName, String.valueOf(shard));
+		}
+		return shardQueueName;
+	}
+
+	/**
+	 * Publishes a tweet to the shard of its user.
+	 */
+	public void publish(Channel channel, long userId, AMQP.BasicProperties properties, byte[] body)
+			throws IOException {
+		if (isSharded()) {
+			channel.basicPublish(exchangeName, String.valueOf(shardOf(userId)), properties, body);
+		} else {
+			channel.basicPublish("", queueName, properties, body);
+		}
+	}
+
+	private void checkShard(int shard) {
+		if (shard < 0 || shard >= shardCount) {
+			throw new IllegalArgumentException("Shard " + shard + " is not one of the " + shardCount + " shards");
+		}
+	}
+
+	/**
+	 * "A Fast, Minimal Memory, Consistent Hash Algorithm" by Lamping and Veach.
+	 */
+	static int jumpHash(long key, int buckets) {
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+}
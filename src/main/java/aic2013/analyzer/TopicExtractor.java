@@ -1,5 +1,6 @@
 package aic2013.analyzer;
 
+import java.util.List;
 import java.util.Set;
 
 import aic2013.common.entities.Topic;
@@ -11,4 +12,11 @@ import aic2013.common.entities.Topic;
  */
 public interface TopicExtractor {
 	Set<Topic> extract(String input) throws ExtractionException;
+
+	/**
+	 * Extracts the topics of several inputs at once.
+	 * 
+	 * @return one topic set per input, in the order of the inputs
+	 */
+	List<Set<Topic>> extractAll(List<String> inputs) throws ExtractionException;
 }
@@ -0,0 +1,101 @@
+package aic2013.analyzer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import twitter4j.TwitterException;
+import twitter4j.json.DataObjectFactory;
+import aic2013.analyzer.filter.TextFilter;
+import aic2013.analyzer.stage.LdaStage;
+import cc.mallet.pipe.iterator.StringArrayIterator;
+import cc.mallet.topics.ParallelTopicModel;
+import cc.mallet.types.InstanceList;
+
+/**
+ * Trains the LDA model used by {@link PretrainedTopicModel} on a corpus of
+ * tweets. The corpus contains one tweet per line, either as raw tweet JSON or
+ * as plain text. Tweets are normalized, filtered and piped exactly like
+ * {@link TopicExtractorImpl} does at runtime, see
+ * {@link TopicExtractorImpl#preprocess}.
+ */
+public class TopicModelTrainer {
+	private static Logger logger = Logger.getLogger(TopicModelTrainer.class
+			.getName());
+
+	private static final int NUM_TOPICS = 100;
+	private static final int NUM_ITERATIONS = 1000;
+	private static final double ALPHA = 50.0;
+	private static final double BETA = 0.01;
+	private static final int OPTIMIZE_INTERVAL = 10;
+	private static final int OPTIMIZE_BURN_IN = 200;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: TopicModelTrainer <corpus file> <model file> [<number of topics> [<number of iterations>]]");
+			System.exit(1);
+		}
+		File corpusFile = new File(args[0]);
+		File modelFile = new File(args[1]);
+		int numTopics = args.length > 2 ? Integer.parseInt(args[2]) : NUM_TOPICS;
+		int numIterations = args.length > 3 ? Integer.parseInt(args[3]) : NUM_ITERATIONS;
+
+		List<String> corpus = readCorpus(corpusFile);
+		logger.log(Level.INFO, "Read {0} tweets from {1}", new Object[] { corpus.size(), corpusFile });
+
+		ParallelTopicModel model = train(corpus, numTopics, numIterations, Runtime.getRuntime().availableProcessors());
+		model.write(modelFile);
+		logger.log(Level.INFO, "Wrote topic model to {0}", modelFile);
+	}
+
+	public static ParallelTopicModel train(List<String> tweets, int numTopics, int numIterations, int numThreads) throws IOException {
+		TextFilter filter = TopicExtractorImpl.createFilter();
+		String[] filteredTweets = new String[tweets.size()];
+		for (int i = 0; i < filteredTweets.length; i++) {
+			filteredTweets[i] = TopicExtractorImpl.preprocess(filter, tweets.get(i));
+		}
+
+		InstanceList instances = new InstanceList(LdaStage.createMalletPipe(false, false, true, true, null));
+		instances.addThruPipe(new StringArrayIterator(filteredTweets));
+
+		ParallelTopicModel model = new ParallelTopicModel(numTopics, ALPHA, BETA);
+		model.addInstances(instances);
+		model.setNumIterations(numIterations);
+		model.setOptimizeInterval(OPTIMIZE_INTERVAL);
+		model.setBurninPeriod(OPTIMIZE_BURN_IN);
+		model.setSymmetricAlpha(false);
+		model.setNumThreads(numThreads);
+		model.estimate();
+		return model;
+	}
+
+	private static List<String> readCorpus(File corpusFile) throws IOException {
+		List<String> tweets = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(corpusFile), Charset.forName("UTF-8")))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.startsWith("{")) {
+					try {
+						line = DataObjectFactory.createStatus(line).getText();
+					} catch (TwitterException e) {
+						logger.log(Level.WARNING, "Skipping malformed tweet", e);
+						continue;
+					}
+				}
+				tweets.add(line);
+			}
+		}
+		return tweets;
+	}
+}
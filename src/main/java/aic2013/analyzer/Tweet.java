@@ -0,0 +1,84 @@
+package aic2013.analyzer;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import aic2013.analyzer.persistence.UserProfile;
+
+/**
+ * The fields of a tweet the analyzer works with, as read by
+ * {@link TweetParser}.
+ */
+public class Tweet {
+	/* tweet ids carry their creation time in milliseconds since this epoch */
+	private static final long TWEET_ID_EPOCH = 1288834974657L;
+	private static final int TWEET_ID_TIMESTAMP_SHIFT = 22;
+	/* ids issued before this one, in November 2010, are sequence numbers without a timestamp */
+	private static final long FIRST_TIMESTAMPED_ID = 29700859247L;
+	private static final ThreadLocal<DateFormat> CREATED_AT_FORMAT = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			return new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+		}
+	};
+
+	private final long id;
+	private final String text;
+	private final boolean retweet;
+	private final UserProfile user;
+	private final String createdAt;
+
+	/**
+	 * @param createdAt the created_at field of the tweet, e.g.
+	 *            "Thu Nov 21 00:00:00 +0000 2013", or null if it has none
+	 */
+	public Tweet(long id, String text, boolean retweet, UserProfile user, String createdAt) {
+		this.id = id;
+		this.text = text;
+		this.retweet = retweet;
+		this.user = user;
+		this.createdAt = createdAt;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public boolean isRetweet() {
+		return retweet;
+	}
+
+	public long getUserId() {
+		return user.getId();
+	}
+
+	public UserProfile getUser() {
+		return user;
+	}
+
+	/**
+	 * @return the creation time encoded in the id of the tweet, which saves
+	 *         parsing the created_at date, or the parsed created_at date for
+	 *         ids that have no timestamp; null if neither is known
+	 */
+	public Date getCreatedAt() {
+		if (id >= FIRST_TIMESTAMPED_ID) {
+			return new Date((id >> TWEET_ID_TIMESTAMP_SHIFT) + TWEET_ID_EPOCH);
+		}
+		if (createdAt == null) {
+			return null;
+		}
+		try {
+			return CREATED_AT_FORMAT.get().parse(createdAt);
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+
+import aic2013.analyzer.persistence.UserProfile;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads the fields of a tweet the analyzer needs straight from its UTF-8
+ * encoded JSON with a streaming parser. Everything else, including the
+ * retweeted status and the remaining entities, is skipped without building
+ * objects for it. Of the user, only the fields of its {@link UserProfile} are
+ * read.
+ *
+ * The parser is thread-safe.
+ */
+public class TweetParser {
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	/**
+	 * @throws IOException if the body is not valid JSON or lacks the text or
+	 *             the user of a tweet
+	 */
+	public Tweet parse(byte[] body) throws IOException {
+		long id = 0;
+		String text = null;
+		boolean retweet = false;
+		UserProfile user = null;
+		String createdAt = null;
+
+		try (JsonParser parser = jsonFactory.createParser(body)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Tweet is not a JSON object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				switch (field) {
+				case "id":
+					if (value == JsonToken.VALUE_NUMBER_INT) {
+						id = parser.getLongValue();
+					}
+					break;
+				case "text":
+					if (value == JsonToken.VALUE_STRING) {
+						text = parser.getText();
+					}
+					break;
+				case "created_at":
+					if (value == JsonToken.VALUE_STRING) {
+						createdAt = parser.getText();
+					}
+					break;
+				case "retweeted_status":
+					retweet = value == JsonToken.START_OBJECT;
+					parser.skipChildren();
+					break;
+				case "user":
+					if (value == JsonToken.START_OBJECT) {
+						user = readUser(parser);
+					}
+					break;
+				default:
+					parser.skipChildren();
+				}
+			}
+		}
+
+		if (text == null || user == null) {
+			throw new IOException("Tweet lacks the text or the user");
+		}
+		return new Tweet(id, text, retweet, user, createdAt);
+	}
+
+	/**
+	 * Reads the user object the parser is positioned at up to its end.
+	 */
+	private UserProfile readUser(JsonParser parser) throws IOException {
+		long userId = 0;
+		String screenName = null;
+		String name = null;
+		String location = null;
+		String lang = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (value == JsonToken.VALUE_NUMBER_INT && "id".equals(field)) {
+				userId = parser.getLongValue();
+			} else if (value == JsonToken.VALUE_STRING) {
+				switch (field) {
+				case "screen_name":
+					screenName = parser.getText();
+					break;
+				case "name":
+					name = parser.getText();
+					break;
+				case "location":
+					location = parser.getText();
+					break;
+				case "lang":
+					lang = parser.getText();
+					break;
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return new UserProfile(userId, screenName, name, location, lang);
+	}
+}
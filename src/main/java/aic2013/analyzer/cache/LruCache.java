@@ -0,0 +1,120 @@
+package aic2013.analyzer.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe map with a maximum size that evicts the least recently used
+ * entry once it is full, and counts hits, misses and evictions. Entries can
+ * optionally expire a fixed time after they were put.
+ */
+public class LruCache<K, V> implements LruCacheMBean {
+	private static class CacheEntry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private CacheEntry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final int maxSize;
+	private final long timeToLiveMillis;
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+
+	public LruCache(int maxSize) {
+		this(maxSize, 0);
+	}
+
+	/**
+	 * @param timeToLiveMillis the time after which an entry expires, 0 if
+	 *            entries never expire
+	 */
+	public LruCache(final int maxSize, long timeToLiveMillis) {
+		this.maxSize = maxSize;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > LruCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached value, or null if the key is not cached or has
+	 *         expired
+	 */
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry != null && timeToLiveMillis > 0 && entry.expiresAt <= System.currentTimeMillis()) {
+			entries.remove(key);
+			expirations++;
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	public synchronized boolean contains(K key) {
+		return get(key) != null;
+	}
+
+	public synchronized void put(K key, V value) {
+		long expiresAt = timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : Long.MAX_VALUE;
+		entries.put(key, new CacheEntry<>(value, expiresAt));
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public int getSize() {
+		return size();
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	@Override
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+
+	@Override
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+}
@@ -0,0 +1,20 @@
+package aic2013.analyzer.cache;
+
+/**
+ * Statistics of an {@link LruCache}.
+ */
+public interface LruCacheMBean {
+	int getSize();
+
+	int getMaxSize();
+
+	long getHits();
+
+	long getMisses();
+
+	long getEvictions();
+
+	long getExpirations();
+
+	double getHitRate();
+}
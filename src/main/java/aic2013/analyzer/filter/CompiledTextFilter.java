@@ -0,0 +1,182 @@
+/**
+ *
+ */
+package aic2013.analyzer.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a chain of {@link PrefixFilter}s followed by
+ * {@link GlobalPrefixFilter}s in a single left-to-right scan with one output
+ * buffer. The output is identical to the one of the decorator chain it was
+ * compiled from.
+ *
+ * Every {@link PrefixFilter} of the chain splits its input at spaces and
+ * drops trailing empty words before it filters. A run of spaces therefore
+ * only survives the chain if a word follows that passes all but the last
+ * prefix filter; the scan keeps such runs pending until it sees that word.
+ */
+public class CompiledTextFilter implements TextFilter {
+
+	private final String[] wordPrefixes;
+	private final String[] globalPrefixes;
+	private final String[] lowerCaseGlobalPrefixes;
+	private final boolean[] caseSensitive;
+
+	/**
+	 * @param wordPrefixes the prefixes of the {@link PrefixFilter}s, outermost
+	 *            first
+	 * @param globalPrefixes the prefixes of the {@link GlobalPrefixFilter}s
+	 *            that are applied after the word prefixes, outermost first
+	 * @param caseSensitive the case sensitivity of the global prefixes
+	 */
+	public CompiledTextFilter(String[] wordPrefixes, String[] globalPrefixes,
+			boolean[] caseSensitive) {
+		if (globalPrefixes.length != caseSensitive.length) {
+			throw new IllegalArgumentException(
+					"Every global prefix needs a case sensitivity");
+		}
+		this.wordPrefixes = wordPrefixes.clone();
+		this.globalPrefixes = globalPrefixes.clone();
+		this.caseSensitive = caseSensitive.clone();
+		lowerCaseGlobalPrefixes = new String[globalPrefixes.length];
+		for (int i = 0; i < globalPrefixes.length; i++) {
+			lowerCaseGlobalPrefixes[i] = globalPrefixes[i].toLowerCase();
+		}
+	}
+
+	/**
+	 * Compiles a decorator chain of {@link PrefixFilter}s and
+	 * {@link GlobalPrefixFilter}s that ends in a {@link BaseFilter}. All
+	 * prefix filters have to wrap the global prefix filters.
+	 */
+	public static CompiledTextFilter compile(TextFilter filter) {
+		List<String> wordPrefixes = new ArrayList<>();
+		List<String> globalPrefixes = new ArrayList<>();
+		List<Boolean> caseSensitive = new ArrayList<>();
+		while (!(filter instanceof BaseFilter)) {
+			if (filter instanceof PrefixFilter && globalPrefixes.isEmpty()) {
+				wordPrefixes.add(((PrefixFilter) filter).getPrefix());
+			} else if (filter instanceof GlobalPrefixFilter) {
+				globalPrefixes.add(((GlobalPrefixFilter) filter).getPrefix());
+				caseSensitive.add(((GlobalPrefixFilter) filter)
+						.isCaseSensitive());
+			} else {
+				throw new IllegalArgumentException("Cannot compile "
+						+ filter.getClass().getName() + " at this position");
+			}
+			filter = ((TextFilterDecorator) filter).decoratedFilter;
+		}
+
+		boolean[] caseSensitiveArray = new boolean[caseSensitive.size()];
+		for (int i = 0; i < caseSensitiveArray.length; i++) {
+			caseSensitiveArray[i] = caseSensitive.get(i);
+		}
+		return new CompiledTextFilter(
+				wordPrefixes.toArray(new String[wordPrefixes.size()]),
+				globalPrefixes.toArray(new String[globalPrefixes.size()]),
+				caseSensitiveArray);
+	}
+
+	/* (non-Javadoc)
+	 * @see aic2013.analyzer.filter.TextFilter#filter(java.lang.String)
+	 */
+	@Override
+	public String filter(String input) {
+		char[] out = new char[input.length()];
+		int length;
+		if (wordPrefixes.length == 0) {
+			input.getChars(0, input.length(), out, 0);
+			length = input.length();
+		} else {
+			length = filterWords(input, out);
+		}
+
+		int start = 0;
+		int end = length;
+		for (int i = 0; i < globalPrefixes.length; i++) {
+			/* trim like String.trim() */
+			while (start < end && out[start] <= ' ') {
+				start++;
+			}
+			while (start < end && out[end - 1] <= ' ') {
+				end--;
+			}
+			if (startsWith(out, start, end, i)) {
+				start += globalPrefixes[i].length();
+			}
+		}
+		return new String(out, start, end - start);
+	}
+
+	private int filterWords(String input, char[] out) {
+		int lastFilter = wordPrefixes.length - 1;
+		int length = 0;
+		int emittedWords = 0;
+		int pendingEmptyWords = 0;
+		int wordStart = 0;
+		while (wordStart <= input.length()) {
+			int wordEnd = input.indexOf(' ', wordStart);
+			if (wordEnd < 0) {
+				wordEnd = input.length();
+			}
+
+			int droppedBy = droppedBy(input, wordStart, wordEnd);
+			if (wordStart == wordEnd) {
+				if (droppedBy > lastFilter) {
+					pendingEmptyWords++;
+				}
+			} else if (droppedBy >= lastFilter) {
+				/* the empty words before this one are no longer trailing */
+				for (; pendingEmptyWords > 0; pendingEmptyWords--) {
+					if (emittedWords++ > 0) {
+						out[length++] = ' ';
+					}
+				}
+				if (droppedBy > lastFilter) {
+					if (emittedWords++ > 0) {
+						out[length++] = ' ';
+					}
+					input.getChars(wordStart, wordEnd, out, length);
+					length += wordEnd - wordStart;
+				}
+			}
+			wordStart = wordEnd + 1;
+		}
+		return length;
+	}
+
+	/**
+	 * @return the index of the first word prefix the word starts with, or the
+	 *         number of word prefixes if it starts with none
+	 */
+	private int droppedBy(String input, int wordStart, int wordEnd) {
+		for (int i = 0; i < wordPrefixes.length; i++) {
+			String prefix = wordPrefixes[i];
+			if (prefix.length() <= wordEnd - wordStart
+					&& input.startsWith(prefix, wordStart)) {
+				return i;
+			}
+		}
+		return wordPrefixes.length;
+	}
+
+	private boolean startsWith(char[] out, int start, int end, int prefixIndex) {
+		String prefix = caseSensitive[prefixIndex] ? globalPrefixes[prefixIndex]
+				: lowerCaseGlobalPrefixes[prefixIndex];
+		if (prefix.length() > end - start) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			char c = out[start + i];
+			if (!caseSensitive[prefixIndex]) {
+				c = Character.toLowerCase(c);
+			}
+			if (c != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package aic2013.analyzer.filter;
+
+import java.lang.Character.UnicodeScript;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Guesses whether a normalized tweet is English from the function words it
+ * contains. A tweet is only considered to be in another language if it is
+ * mostly written in a non-Latin script, or if it contains at least two
+ * function words of German, Spanish, French, Italian, Portuguese or Dutch and
+ * more of them than English ones. Tweets without any function words, such as
+ * short headlines or lists of names, count as English.
+ * 
+ * The detector expects text that went through {@link TextNormalizer}, so
+ * accented letters have already lost their accents. It keeps no state and may
+ * be shared by all threads.
+ */
+public class EnglishDetector {
+
+	public enum Verdict {
+		ENGLISH,
+		/* no letters at all, e.g. only emoji, links or mentions */
+		EMPTY,
+		FOREIGN_SCRIPT,
+		OTHER_LANGUAGE
+	}
+
+	/* no function word is longer than this */
+	private static final int MAX_WORD_LENGTH = 7;
+
+	private static final Set<String> ENGLISH_WORDS = words("the a an and or but is are was were be been am to of in on at for with from by as it its this that these those i you he she we they me my your our their his her not no so if then than just what who how when all can will would do does did have has had get got out up about new now here there more one some today like love good great best happy first everyone also man dont cant");
+	private static final Set<String> FOREIGN_WORDS = words(
+	/* German */
+	"der die das und ist nicht ein eine ich du er sie wir ihr mit auf den dem des zu von fur sich auch es nach bei aus wie noch nur oder aber sind wird werden haben hat war im kein sehr schon heute mein dein "
+	/* Spanish */
+	+ "el la los las y que en de un una es por con para se del al lo su como mas pero muy esta estoy hoy todo "
+	/* French */
+	+ "le les et est des du qui dans pour pas sur avec ce il elle je tu nous vous au aux mais tres "
+	/* Italian */
+	+ "e di non per sono della questo molto oggi "
+	/* Portuguese */
+	+ "o os as nao um uma com do da em muito voce "
+	/* Dutch */
+	+ "het een en van ik je niet dat op te zijn met voor maar ook wat dit");
+
+	static {
+		FOREIGN_WORDS.removeAll(ENGLISH_WORDS);
+	}
+
+	private static Set<String> words(String words) {
+		return new HashSet<>(Arrays.asList(words.split(" ")));
+	}
+
+	public Verdict detect(String text) {
+		int letters = 0;
+		int nonLatinLetters = 0;
+		int englishWords = 0;
+		int foreignWords = 0;
+		char[] word = new char[MAX_WORD_LENGTH];
+		int wordLength = 0;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			if (c >= 'a' && c <= 'z') {
+				letters++;
+				if (wordLength >= 0 && wordLength < MAX_WORD_LENGTH) {
+					word[wordLength++] = c;
+				} else {
+					wordLength = -1;
+				}
+				continue;
+			}
+			if (c == '\'') {
+				/* "don't" and "c'est" are looked up without the apostrophe */
+				continue;
+			}
+
+			if (Character.isLetter(c)) {
+				letters++;
+				if (UnicodeScript.of(c) != UnicodeScript.LATIN) {
+					nonLatinLetters++;
+				}
+				/* a word with a non-ASCII letter is no function word */
+				wordLength = -1;
+				continue;
+			}
+
+			if (wordLength > 0) {
+				String w = new String(word, 0, wordLength);
+				if (ENGLISH_WORDS.contains(w)) {
+					englishWords++;
+				} else if (FOREIGN_WORDS.contains(w)) {
+					foreignWords++;
+				}
+			}
+			wordLength = 0;
+		}
+
+		if (letters == 0) {
+			return Verdict.EMPTY;
+		}
+		if (nonLatinLetters * 2 > letters) {
+			return Verdict.FOREIGN_SCRIPT;
+		}
+		if (foreignWords >= 2 && foreignWords > englishWords) {
+			return Verdict.OTHER_LANGUAGE;
+		}
+		return Verdict.ENGLISH;
+	}
+}
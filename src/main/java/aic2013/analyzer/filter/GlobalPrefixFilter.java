@@ -42,4 +42,12 @@ public class GlobalPrefixFilter extends TextFilterDecorator {
 		}
 		return decoratedFilter.filter(input);
 	}
+
+	String getPrefix() {
+		return prefix;
+	}
+
+	boolean isCaseSensitive() {
+		return caseSensitive;
+	}
 }
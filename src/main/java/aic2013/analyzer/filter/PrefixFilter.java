@@ -35,4 +35,8 @@ public class PrefixFilter extends TextFilterDecorator {
 		return decoratedFilter.filter(sb.toString());
 	}
 
+	String getPrefix() {
+		return prefix;
+	}
+
 }
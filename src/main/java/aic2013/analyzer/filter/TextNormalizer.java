@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package aic2013.analyzer.filter;
+
+import java.text.Normalizer;
+
+/**
+ * Folds a tweet to the plain text the CRF classifier and the mallet pipe were
+ * made for. Accented letters are decomposed and lose their accents, emoji and
+ * other symbols are dropped, and all kinds of spaces become a plain space.
+ * Letters without a decomposition, like those of non-Latin scripts, are kept.
+ * 
+ * Most tweets are ASCII already and are returned as they are, without
+ * allocating.
+ */
+public class TextNormalizer {
+
+	private TextNormalizer() {
+	}
+
+	public static String normalize(String input) {
+		int firstNonAscii = 0;
+		while (firstNonAscii < input.length()
+				&& input.charAt(firstNonAscii) < 0x80) {
+			firstNonAscii++;
+		}
+		if (firstNonAscii == input.length()) {
+			return input;
+		}
+
+		String decomposed = Normalizer.normalize(input, Normalizer.Form.NFKD);
+		StringBuilder out = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length();) {
+			int c = decomposed.codePointAt(i);
+			i += Character.charCount(c);
+			if (c < 0x80) {
+				out.append((char) c);
+				continue;
+			}
+			switch (Character.getType(c)) {
+			/* accents, variation selectors and emoji modifiers */
+			case Character.NON_SPACING_MARK:
+			case Character.COMBINING_SPACING_MARK:
+			case Character.ENCLOSING_MARK:
+			case Character.MODIFIER_SYMBOL:
+			/* emoji, dingbats and zero width joiners */
+			case Character.OTHER_SYMBOL:
+			case Character.FORMAT:
+			case Character.PRIVATE_USE:
+			case Character.SURROGATE:
+			case Character.UNASSIGNED:
+				break;
+			case Character.SPACE_SEPARATOR:
+			case Character.LINE_SEPARATOR:
+			case Character.PARAGRAPH_SEPARATOR:
+				out.append(' ');
+				break;
+			default:
+				out.appendCodePoint(c);
+			}
+		}
+		return out.toString();
+	}
+}
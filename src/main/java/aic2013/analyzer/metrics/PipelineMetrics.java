@@ -0,0 +1,317 @@
+package aic2013.analyzer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-stage latencies and message counters of the extraction pipeline,
+ * exported over JMX under the {@value #DOMAIN} domain.
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+	public static final String DOMAIN = "aic2013.analyzer";
+	private static final long WINDOW_MILLIS = 10000;
+
+	public enum Stage {
+		/** parsing a tweet from its JSON */
+		PARSE,
+		/** filtering the text of a tweet */
+		FILTER,
+		/** running a batch of texts through the mallet pipe */
+		VECTORIZE,
+		/** LDA topics of a tweet */
+		LDA,
+		/** named entities of a tweet */
+		NER,
+		/** gazetteer names of a tweet */
+		GAZETTEER,
+		/** a worker processing a batch, from parsing to handing its relations to the write stage */
+		EXTRACTION,
+		/** a batch waiting for its relations to be stored */
+		WRITE_WAIT,
+		/** storing a batch of topics and relations */
+		PERSIST
+	}
+
+	private final Map<Stage, StageTimer> timers = new EnumMap<>(Stage.class);
+	private final AtomicLong consumed = new AtomicLong();
+	private final AtomicLong acked = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong poisoned = new AtomicLong();
+	private final AtomicLong skippedEmpty = new AtomicLong();
+	private final AtomicLong skippedForeignScript = new AtomicLong();
+	private final AtomicLong skippedOtherLanguage = new AtomicLong();
+	private final AtomicLong overBudget = new AtomicLong();
+	private final AtomicLong shortCircuited = new AtomicLong();
+	private final AtomicLong nerFallbacks = new AtomicLong();
+	private final AtomicLong misrouted = new AtomicLong();
+	private final AtomicLong tweetAgeMillis = new AtomicLong();
+	private final AtomicLong alphabetSize = new AtomicLong();
+	private final AtomicLong alphabetRotations = new AtomicLong();
+	private final AtomicLong prefetch = new AtomicLong();
+	private final AtomicLong classifierLoadMillis = new AtomicLong(-1);
+	private long queueDepth;
+	private long queueLagMillis;
+	private long depthUpdated;
+	private long consumedAtDepthUpdate;
+
+	public PipelineMetrics() {
+		for (Stage stage : Stage.values()) {
+			timers.put(stage, new StageTimer(WINDOW_MILLIS));
+		}
+	}
+
+	/**
+	 * Registers the counters and a timer per stage with the platform MBean
+	 * server.
+	 */
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, new ObjectName(DOMAIN + ":type=PipelineMetrics"));
+		for (Map.Entry<Stage, StageTimer> timer : timers.entrySet()) {
+			server.registerMBean(timer.getValue(),
+					new ObjectName(DOMAIN + ":type=Stage,name=" + timer.getKey().name().toLowerCase()));
+		}
+	}
+
+	/**
+	 * Registers another MBean of the pipeline, such as a cache, in the
+	 * {@value #DOMAIN} domain.
+	 */
+	public void register(String type, String name, Object mbean) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(mbean,
+				new ObjectName(DOMAIN + ":type=" + type + ",name=" + name));
+	}
+
+	public StageTimer timer(Stage stage) {
+		return timers.get(stage);
+	}
+
+	public void consumed() {
+		consumed.incrementAndGet();
+	}
+
+	public void acked(int count) {
+		acked.addAndGet(count);
+	}
+
+	public void failed() {
+		failed(1);
+	}
+
+	public void failed(int count) {
+		failed.addAndGet(count);
+	}
+
+	public void retried(int count) {
+		retried.addAndGet(count);
+	}
+
+	/**
+	 * Counts a tweet that was moved to the dead-letter queue.
+	 */
+	public void poisoned() {
+		poisoned.incrementAndGet();
+	}
+
+	public void skippedEmpty() {
+		skippedEmpty.incrementAndGet();
+	}
+
+	public void skippedForeignScript() {
+		skippedForeignScript.incrementAndGet();
+	}
+
+	public void skippedOtherLanguage() {
+		skippedOtherLanguage.incrementAndGet();
+	}
+
+	/**
+	 * Counts a tweet a stage skipped because its budget was used up.
+	 */
+	public void overBudget() {
+		overBudget.incrementAndGet();
+	}
+
+	/**
+	 * Counts a tweet that skips the remaining stages since it has enough
+	 * topics.
+	 */
+	public void shortCircuited() {
+		shortCircuited.incrementAndGet();
+	}
+
+	/**
+	 * Counts tweets the gazetteer found no name in and that are passed on to
+	 * the CRF classifier.
+	 */
+	public void nerFallbacks(int tweets) {
+		nerFallbacks.addAndGet(tweets);
+	}
+
+	/**
+	 * Counts a tweet that was delivered to the shard of another user.
+	 */
+	public void misrouted() {
+		misrouted.incrementAndGet();
+	}
+
+	/**
+	 * @param createdAt the time the tweet that was just processed was
+	 *            created at
+	 */
+	public void tweetProcessed(long createdAt) {
+		tweetAgeMillis.set(System.currentTimeMillis() - createdAt);
+	}
+
+	/**
+	 * @param words the number of words the alphabet of an extractor grew by,
+	 *            negative if it was replaced by a smaller one
+	 */
+	public void alphabetGrown(long words) {
+		alphabetSize.addAndGet(words);
+	}
+
+	public void alphabetRotated() {
+		alphabetRotations.incrementAndGet();
+	}
+
+	/**
+	 * @param total the prefetch summed over all consumer channels
+	 */
+	public void prefetch(int total) {
+		prefetch.set(total);
+	}
+
+	public void classifierLoaded(long millis) {
+		classifierLoadMillis.set(millis);
+	}
+
+	/**
+	 * Updates the number of messages waiting in the queue and estimates how
+	 * long the consumer needs to work them off at the rate it consumed since
+	 * the previous update.
+	 */
+	public synchronized void queueDepth(long depth) {
+		long now = System.currentTimeMillis();
+		long consumedNow = consumed.get();
+		if (depthUpdated > 0 && now > depthUpdated) {
+			double perMilli = (double) (consumedNow - consumedAtDepthUpdate) / (now - depthUpdated);
+			queueLagMillis = depth == 0 ? 0 : perMilli > 0 ? (long) (depth / perMilli) : -1;
+		}
+		queueDepth = depth;
+		depthUpdated = now;
+		consumedAtDepthUpdate = consumedNow;
+	}
+
+	@Override
+	public long getConsumed() {
+		return consumed.get();
+	}
+
+	@Override
+	public long getAcked() {
+		return acked.get();
+	}
+
+	@Override
+	public long getFailed() {
+		return failed.get();
+	}
+
+	@Override
+	public long getRetried() {
+		return retried.get();
+	}
+
+	@Override
+	public long getPoisoned() {
+		return poisoned.get();
+	}
+
+	@Override
+	public long getSkippedEmpty() {
+		return skippedEmpty.get();
+	}
+
+	@Override
+	public long getSkippedForeignScript() {
+		return skippedForeignScript.get();
+	}
+
+	@Override
+	public long getSkippedOtherLanguage() {
+		return skippedOtherLanguage.get();
+	}
+
+	@Override
+	public long getOverBudget() {
+		return overBudget.get();
+	}
+
+	@Override
+	public long getShortCircuited() {
+		return shortCircuited.get();
+	}
+
+	@Override
+	public long getNerFallbacks() {
+		return nerFallbacks.get();
+	}
+
+	@Override
+	public long getMisrouted() {
+		return misrouted.get();
+	}
+
+	@Override
+	public synchronized long getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * @return the estimated time until the queue is drained, -1 if nothing
+	 *         has been consumed recently
+	 */
+	@Override
+	public synchronized long getQueueLagMillis() {
+		return queueLagMillis;
+	}
+
+	/**
+	 * @return the age of the most recently processed tweet
+	 */
+	@Override
+	public long getTweetAgeMillis() {
+		return tweetAgeMillis.get();
+	}
+
+	/**
+	 * @return the number of words in the alphabets of all extractors
+	 */
+	@Override
+	public long getAlphabetSize() {
+		return alphabetSize.get();
+	}
+
+	@Override
+	public long getAlphabetRotations() {
+		return alphabetRotations.get();
+	}
+
+	@Override
+	public long getPrefetch() {
+		return prefetch.get();
+	}
+
+	@Override
+	public long getClassifierLoadMillis() {
+		return classifierLoadMillis.get();
+	}
+}
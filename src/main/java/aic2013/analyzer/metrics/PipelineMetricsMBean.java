@@ -0,0 +1,44 @@
+package aic2013.analyzer.metrics;
+
+/**
+ * Counters and queue state of the extraction consumer.
+ */
+public interface PipelineMetricsMBean {
+	long getConsumed();
+
+	long getAcked();
+
+	long getFailed();
+
+	long getRetried();
+
+	long getPoisoned();
+
+	long getSkippedEmpty();
+
+	long getSkippedForeignScript();
+
+	long getSkippedOtherLanguage();
+
+	long getOverBudget();
+
+	long getShortCircuited();
+
+	long getNerFallbacks();
+
+	long getMisrouted();
+
+	long getQueueDepth();
+
+	long getQueueLagMillis();
+
+	long getTweetAgeMillis();
+
+	long getAlphabetSize();
+
+	long getAlphabetRotations();
+
+	long getPrefetch();
+
+	long getClassifierLoadMillis();
+}
@@ -0,0 +1,89 @@
+package aic2013.analyzer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the latencies of one pipeline stage into an HdrHistogram
+ * {@link Recorder}, which any number of threads can write to without locking.
+ *
+ * Percentiles and throughput are reported for a window that is rolled over
+ * when it is read and at least {@code windowMillis} old, so they reflect the
+ * recent load rather than the whole lifetime of the process.
+ */
+public class StageTimer implements StageTimerMBean {
+	private static final int SIGNIFICANT_DIGITS = 2;
+	private static final long NANOS_PER_MICRO = 1000;
+
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+	private final AtomicLong count = new AtomicLong();
+	private final long windowMillis;
+	private Histogram window;
+	private long windowStarted = System.currentTimeMillis();
+	private long windowLength;
+
+	public StageTimer(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Records one execution of the stage.
+	 *
+	 * @param startNanos the {@link System#nanoTime()} at which it started
+	 */
+	public void record(long startNanos) {
+		recorder.recordValue(Math.max(0, System.nanoTime() - startNanos));
+		count.incrementAndGet();
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the executions per second
+	 */
+	@Override
+	public synchronized double getThroughput() {
+		Histogram histogram = window();
+		return histogram.getTotalCount() * 1000.0 / Math.max(1, windowLength);
+	}
+
+	@Override
+	public double getMeanMicros() {
+		return window().getMean() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getP50Micros() {
+		return window().getValueAtPercentile(50) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getP99Micros() {
+		return window().getValueAtPercentile(99) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getP999Micros() {
+		return window().getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getMaxMicros() {
+		return window().getMaxValue() / NANOS_PER_MICRO;
+	}
+
+	private synchronized Histogram window() {
+		long now = System.currentTimeMillis();
+		if (window == null || now - windowStarted >= windowMillis) {
+			window = recorder.getIntervalHistogram(window);
+			windowLength = now - windowStarted;
+			windowStarted = now;
+		}
+		return window;
+	}
+}
@@ -0,0 +1,21 @@
+package aic2013.analyzer.metrics;
+
+/**
+ * Latencies of one pipeline stage. Everything but the count refers to the
+ * current window, see {@link StageTimer}.
+ */
+public interface StageTimerMBean {
+	long getCount();
+
+	double getThroughput();
+
+	double getMeanMicros();
+
+	long getP50Micros();
+
+	long getP99Micros();
+
+	long getP999Micros();
+
+	long getMaxMicros();
+}
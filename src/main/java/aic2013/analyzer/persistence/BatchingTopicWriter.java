@@ -0,0 +1,212 @@
+package aic2013.analyzer.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aic2013.analyzer.cache.LruCache;
+import aic2013.common.entities.Topic;
+
+/**
+ * Write-behind stage in front of a {@link TopicStore}. Relations from many
+ * tweets are collected and de-duplicated, and are stored in one call per
+ * batch once the batch holds {@code flushSize} relations or the flush
+ * interval has passed.
+ *
+ * All batches are stored by a single writer thread. The callback of a write
+ * is notified after the batch containing it has been stored.
+ *
+ * Topics and relations that have been stored are remembered in bounded LRU
+ * caches and are not written again while they are cached. A write that only
+ * contains known relations is acknowledged right away.
+ */
+public class BatchingTopicWriter {
+	private static Logger logger = Logger.getLogger(BatchingTopicWriter.class.getName());
+
+	public interface Callback {
+		void written();
+
+		void failed(PersistenceException e);
+	}
+
+	private final TopicStore store;
+	private final int flushSize;
+	private final LruCache<String, Boolean> knownTopics;
+	private final LruCache<String, Boolean> knownRelations;
+	private final ScheduledExecutorService writer;
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	private Map<String, Topic> topics = new LinkedHashMap<>();
+	private Map<String, TopicRelation> relations = new LinkedHashMap<>();
+	private List<Callback> callbacks = new ArrayList<>();
+	private boolean flushRequested;
+	/* set once close has given up on the writer thread, whose callbacks are dropped from then on */
+	private volatile boolean abandoned;
+
+	/**
+	 * @param knownTopicsSize the number of stored topics to remember
+	 * @param knownRelationsSize the number of stored relations to remember
+	 */
+	public BatchingTopicWriter(TopicStore store, int flushSize, long flushIntervalMillis, int knownTopicsSize,
+			int knownRelationsSize) {
+		this.store = store;
+		this.flushSize = flushSize;
+		knownTopics = new LruCache<>(knownTopicsSize);
+		knownRelations = new LruCache<>(knownRelationsSize);
+		writer = Executors.newSingleThreadScheduledExecutor();
+		writer.scheduleWithFixedDelay(flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues relations for the next batch.
+	 *
+	 * @param callback notified once the relations have been stored
+	 */
+	public void write(Collection<TopicRelation> newRelations, Callback callback) {
+		boolean full;
+		boolean known = true;
+		synchronized (this) {
+			for (TopicRelation relation : newRelations) {
+				String relationKey = relation.getKey();
+				if (knownRelations.contains(relationKey)) {
+					continue;
+				}
+				known = false;
+				if (!relations.containsKey(relationKey)) {
+					relations.put(relationKey, relation);
+				}
+				String topicKey = TopicRelation.topicKey(relation.getTopic());
+				if (!topics.containsKey(topicKey) && !knownTopics.contains(topicKey)) {
+					topics.put(topicKey, relation.getTopic());
+				}
+			}
+			if (!known) {
+				callbacks.add(callback);
+			}
+
+			full = relations.size() >= flushSize && !flushRequested;
+			if (full) {
+				flushRequested = true;
+			}
+		}
+		if (full) {
+			writer.execute(flushTask);
+		}
+		if (known) {
+			callback.written();
+		}
+	}
+
+	/**
+	 * @return the number of distinct relations waiting for the next batch
+	 */
+	public synchronized int getPendingCount() {
+		return relations.size();
+	}
+
+	public LruCache<String, Boolean> getKnownTopics() {
+		return knownTopics;
+	}
+
+	public LruCache<String, Boolean> getKnownRelations() {
+		return knownRelations;
+	}
+
+	/**
+	 * Stores everything that is still queued and stops the writer thread.
+	 */
+	public void close() {
+		close(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stores everything that is still queued and stops the writer thread,
+	 * unless the batch that is currently being stored takes longer than the
+	 * timeout. In that case the writer thread is interrupted, and the
+	 * callbacks of the batch are not notified even if it is stored after
+	 * all, since the caller has moved on.
+	 * 
+	 * @return true if everything was stored, or failed to store, in time
+	 */
+	public boolean close(long timeout, TimeUnit unit) {
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(timeout, unit)) {
+				abandon();
+				return false;
+			}
+		} catch (InterruptedException e) {
+			abandon();
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		flush();
+		return true;
+	}
+
+	private void abandon() {
+		abandoned = true;
+		writer.shutdownNow();
+	}
+
+	private void flush() {
+		Map<String, Topic> batchTopics;
+		Map<String, TopicRelation> batchRelations;
+		List<Callback> batchCallbacks;
+		synchronized (this) {
+			flushRequested = false;
+			if (callbacks.isEmpty()) {
+				return;
+			}
+			batchTopics = topics;
+			batchRelations = relations;
+			batchCallbacks = callbacks;
+			topics = new LinkedHashMap<>();
+			relations = new LinkedHashMap<>();
+			callbacks = new ArrayList<>();
+		}
+
+		PersistenceException failure = null;
+		try {
+			store.store(batchTopics.values(), batchRelations.values());
+			for (String topicKey : batchTopics.keySet()) {
+				knownTopics.put(topicKey, Boolean.TRUE);
+			}
+			for (String relationKey : batchRelations.keySet()) {
+				knownRelations.put(relationKey, Boolean.TRUE);
+			}
+		} catch (PersistenceException e) {
+			logger.log(Level.SEVERE, "Could not store " + batchRelations.size() + " relations", e);
+			failure = e;
+		}
+
+		if (abandoned) {
+			logger.log(Level.WARNING, "Dropping the callbacks of {0} relations stored after the writer was closed",
+					batchRelations.size());
+			return;
+		}
+		for (Callback callback : batchCallbacks) {
+			try {
+				if (failure == null) {
+					callback.written();
+				} else {
+					callback.failed(failure);
+				}
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, null, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package aic2013.analyzer.persistence;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * Appends relations to a local file instead of the graph, one tab-separated
+ * "user id, relation type, topic" line per relation. The file can be loaded
+ * into Neo4j later, e.g. with LOAD CSV.
+ *
+ * Topics are implied by the relations and are not written on their own.
+ */
+public class FileTopicStore implements TopicStore, Closeable {
+	private final Writer writer;
+
+	public FileTopicStore(File file) throws IOException {
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8")),
+				1 << 16);
+	}
+
+	@Override
+	public synchronized void store(Collection<Topic> topics, Collection<TopicRelation> relations)
+			throws PersistenceException {
+		try {
+			for (TopicRelation relation : relations) {
+				writer.write(Long.toString(relation.getUserId()));
+				writer.write('\t');
+				writer.write(relation.getType());
+				writer.write('\t');
+				/* tabs and line breaks would split the line */
+				writer.write(TopicRelation.topicKey(relation.getTopic()).replace('\t', ' ').replace('\n', ' ')
+						.replace('\r', ' '));
+				writer.write('\n');
+			}
+			writer.flush();
+		} catch (IOException e) {
+			throw new PersistenceException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+}
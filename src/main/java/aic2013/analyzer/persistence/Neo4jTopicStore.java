@@ -0,0 +1,106 @@
+package aic2013.analyzer.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * Writes a batch of topics and relations in one transaction per call to
+ * {@link #store(Collection, Collection)}, with one parameterized
+ * {@code UNWIND ... MERGE} statement for all topics and one for all relations
+ * of a type, instead of a round trip per topic and per relation.
+ *
+ * The statements create the nodes and relationships the Neo4jService of the
+ * common module creates: {@code (:Topic {name})} nodes named by the topic
+ * key, {@code (:User {id})} nodes with the fields of the {@link UserProfile}
+ * of the relation, and a relationship of the relation type from the user to
+ * the topic. Fields that are unknown keep the value the node already has.
+ */
+public class Neo4jTopicStore implements TopicStore {
+	private static Logger logger = Logger.getLogger(Neo4jTopicStore.class.getName());
+
+	static final String MERGE_TOPICS = "UNWIND {1} AS name MERGE (:Topic {name: name})";
+	/* relationship types cannot be parameters, so there is a statement per type */
+	static final String MERGE_RELATIONS = "UNWIND {1} AS r MATCH (t:Topic {name: r.topic}) "
+			+ "MERGE (u:User {id: r.user}) "
+			+ "SET u.screenName = coalesce(r.screenName, u.screenName), u.name = coalesce(r.name, u.name), "
+			+ "u.location = coalesce(r.location, u.location), u.lang = coalesce(r.lang, u.lang) "
+			+ "MERGE (u)-[:%s]->(t)";
+	private static final Pattern RELATION_TYPE = Pattern.compile("[A-Z_]+");
+
+	private final Connection connection;
+
+	/**
+	 * @param connection the connection the batches are written on; it is
+	 *            switched to manual commits
+	 */
+	public Neo4jTopicStore(Connection connection) throws SQLException {
+		this.connection = connection;
+		connection.setAutoCommit(false);
+	}
+
+	@Override
+	public void store(Collection<Topic> topics, Collection<TopicRelation> relations) throws PersistenceException {
+		List<String> topicRows = new ArrayList<>(topics.size());
+		for (Topic topic : topics) {
+			topicRows.add(TopicRelation.topicKey(topic));
+		}
+		Map<String, List<Map<String, Object>>> relationRows = new LinkedHashMap<>();
+		for (TopicRelation relation : relations) {
+			if (!RELATION_TYPE.matcher(relation.getType()).matches()) {
+				throw new PersistenceException("Invalid relation type " + relation.getType());
+			}
+			List<Map<String, Object>> rows = relationRows.get(relation.getType());
+			if (rows == null) {
+				rows = new ArrayList<>();
+				relationRows.put(relation.getType(), rows);
+			}
+			Map<String, Object> row = new HashMap<>();
+			row.put("user", relation.getUserId());
+			row.put("topic", TopicRelation.topicKey(relation.getTopic()));
+			UserProfile user = relation.getUser();
+			if (user != null) {
+				row.put("screenName", user.getScreenName());
+				row.put("name", user.getName());
+				row.put("location", user.getLocation());
+				row.put("lang", user.getLang());
+			}
+			rows.add(row);
+		}
+
+		try {
+			if (!topicRows.isEmpty()) {
+				execute(MERGE_TOPICS, topicRows);
+			}
+			for (Map.Entry<String, List<Map<String, Object>>> rows : relationRows.entrySet()) {
+				execute(String.format(MERGE_RELATIONS, rows.getKey()), rows.getValue());
+			}
+			connection.commit();
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException ex) {
+				logger.log(Level.SEVERE, "Rollback failed", ex);
+			}
+			throw new PersistenceException(e);
+		}
+	}
+
+	private void execute(String statement, List<?> rows) throws SQLException {
+		try (PreparedStatement prepared = connection.prepareStatement(statement)) {
+			prepared.setObject(1, rows);
+			prepared.executeUpdate();
+		}
+	}
+}
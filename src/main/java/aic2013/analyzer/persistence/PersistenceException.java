@@ -0,0 +1,15 @@
+package aic2013.analyzer.persistence;
+
+public class PersistenceException extends Exception {
+	public PersistenceException(String msg) {
+		super(msg);
+	}
+
+	public PersistenceException(Throwable t) {
+		super(t);
+	}
+
+	public PersistenceException(String msg, Throwable t) {
+		super(msg, t);
+	}
+}
@@ -0,0 +1,29 @@
+package aic2013.analyzer.persistence;
+
+import java.util.Collection;
+
+import aic2013.analyzer.metrics.StageTimer;
+import aic2013.common.entities.Topic;
+
+/**
+ * Decorates a store with a timer for every batch it stores.
+ */
+public class TimedTopicStore implements TopicStore {
+	private final TopicStore decoratedStore;
+	private final StageTimer timer;
+
+	public TimedTopicStore(TopicStore decoratedStore, StageTimer timer) {
+		this.decoratedStore = decoratedStore;
+		this.timer = timer;
+	}
+
+	@Override
+	public void store(Collection<Topic> topics, Collection<TopicRelation> relations) throws PersistenceException {
+		long start = System.nanoTime();
+		try {
+			decoratedStore.store(topics, relations);
+		} finally {
+			timer.record(start);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package aic2013.analyzer.persistence;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * A (user, relation type, topic) triple that is written to the graph, e.g.
+ * "user TWEETS topic".
+ */
+public class TopicRelation {
+	private final String type;
+	private final long userId;
+	private final UserProfile user;
+	private final Topic topic;
+
+	/**
+	 * @param user the profile of the user, or null to store the id only
+	 */
+	public TopicRelation(String type, long userId, UserProfile user, Topic topic) {
+		this.type = type;
+		this.userId = userId;
+		this.user = user;
+		this.topic = topic;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public UserProfile getUser() {
+		return user;
+	}
+
+	public Topic getTopic() {
+		return topic;
+	}
+
+	/**
+	 * @return a key that identifies the relation independently of the entity
+	 *         instances
+	 */
+	public String getKey() {
+		return userId + "|" + type + "|" + topicKey(topic);
+	}
+
+	/**
+	 * @return the normalized name of the topic, its name parts joined by
+	 *         spaces
+	 */
+	public static String topicKey(Topic topic) {
+		StringBuilder sb = new StringBuilder();
+		for (String part : topic.getName()) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(part.trim());
+		}
+		return sb.toString();
+	}
+}
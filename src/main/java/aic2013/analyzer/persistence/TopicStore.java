@@ -0,0 +1,16 @@
+package aic2013.analyzer.persistence;
+
+import java.util.Collection;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * Persists topics and the relations of users to them.
+ */
+public interface TopicStore {
+	/**
+	 * Stores the given topics and relations atomically. Both may already
+	 * exist in the store.
+	 */
+	void store(Collection<Topic> topics, Collection<TopicRelation> relations) throws PersistenceException;
+}
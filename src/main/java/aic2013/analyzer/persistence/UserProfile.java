@@ -0,0 +1,45 @@
+package aic2013.analyzer.persistence;
+
+/**
+ * The fields of the author of a tweet that are stored on its User node,
+ * as read from the user object of the tweet.
+ */
+public class UserProfile {
+	private final long id;
+	private final String screenName;
+	private final String name;
+	private final String location;
+	private final String lang;
+
+	/**
+	 * @param screenName the screen_name of the user, or null if unknown,
+	 *            like the other fields
+	 */
+	public UserProfile(long id, String screenName, String name, String location, String lang) {
+		this.id = id;
+		this.screenName = screenName;
+		this.name = name;
+		this.location = location;
+		this.lang = lang;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getScreenName() {
+		return screenName;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	public String getLang() {
+		return lang;
+	}
+}
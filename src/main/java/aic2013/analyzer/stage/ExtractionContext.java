@@ -0,0 +1,82 @@
+package aic2013.analyzer.stage;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import aic2013.common.entities.Topic;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * A tweet on its way through the stages of an extractor: the raw and the
+ * filtered text, the topics the stages found so far, and whether the
+ * remaining stages can skip it.
+ */
+public class ExtractionContext {
+	private final String input;
+	private final String filteredInput;
+	private final Set<Topic> topics = new HashSet<>();
+	private List<List<CoreLabel>> sentences;
+	private boolean done;
+	private boolean complete = true;
+
+	/**
+	 * @param input the raw text of the tweet
+	 * @param filteredInput the normalized text without mentions, hashtags,
+	 *            links and the retweet marker
+	 */
+	public ExtractionContext(String input, String filteredInput) {
+		this.input = input;
+		this.filteredInput = filteredInput;
+	}
+
+	public String getInput() {
+		return input;
+	}
+
+	public String getFilteredInput() {
+		return filteredInput;
+	}
+
+	/**
+	 * @return the topics of all stages that have completed so far
+	 */
+	public Set<Topic> getTopics() {
+		return topics;
+	}
+
+	/**
+	 * @return the tokens of the tweet with their CRF labels, or null if the
+	 *         NER stage did not run on the tweet
+	 */
+	public List<List<CoreLabel>> getSentences() {
+		return sentences;
+	}
+
+	public void setSentences(List<List<CoreLabel>> sentences) {
+		this.sentences = sentences;
+	}
+
+	/**
+	 * @return true if the remaining stages skip the tweet
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	public void setDone(boolean done) {
+		this.done = done;
+	}
+
+	/**
+	 * @return false if a stage skipped the tweet, e.g. because it ran out of
+	 *         budget or the tweet was done
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+}
@@ -0,0 +1,44 @@
+package aic2013.analyzer.stage;
+
+import java.util.List;
+import java.util.Set;
+
+import aic2013.analyzer.ExtractionException;
+import aic2013.common.entities.Topic;
+
+/**
+ * One way of finding the topics of tweets, e.g. named entity recognition.
+ * An extractor runs its stages one after the other on a whole batch and
+ * merges the topics they return.
+ *
+ * A stage skips the tweets that are done, and stops once its deadline has
+ * passed, leaving the remaining tweets without topics. Stages may keep
+ * mutable state and are only used by the extractor they were created for.
+ */
+public interface ExtractionStage {
+	/**
+	 * @return the name the stage is configured by, e.g. "ner"
+	 */
+	String getName();
+
+	/**
+	 * @return true if the stage may run on another thread while the
+	 *         following stages run, because it only reads the texts of the
+	 *         batch
+	 */
+	boolean isConcurrent();
+
+	/**
+	 * @return true if the stage also runs on the tweets that are not in
+	 *         English, or have no text besides mentions, hashtags and links
+	 */
+	boolean isLanguageIndependent();
+
+	/**
+	 * @param deadline the {@link System#nanoTime()} after which the stage
+	 *            stops, {@link Long#MAX_VALUE} for no deadline
+	 * @return the topics per tweet of the batch, null for the tweets the
+	 *         stage skipped
+	 */
+	List<Set<Topic>> extract(List<ExtractionContext> batch, long deadline) throws ExtractionException;
+}
@@ -0,0 +1,177 @@
+package aic2013.analyzer.stage;
+
+import java.util.Arrays;
+
+import cc.mallet.pipe.Pipe;
+import cc.mallet.pipe.TokenSequenceRemoveStopwords;
+import cc.mallet.types.Alphabet;
+import cc.mallet.types.FeatureSequence;
+import cc.mallet.types.Instance;
+import cc.mallet.types.Token;
+import cc.mallet.types.TokenSequence;
+
+/**
+ * Turns short texts into the feature sequences the pipe of
+ * {@link LdaStage#createMalletPipe} makes of them, without the character,
+ * token and token sequence objects of the pipe. Words are runs of ASCII
+ * letters, lowercased, without the default Mallet stopwords, like the
+ * {@link cc.mallet.util.CharSequenceLexer#LEX_ALPHA} tokens of the pipe.
+ *
+ * The feature id of every word seen is kept in an open addressing table that
+ * is probed with the characters of the text, so that a known word costs no
+ * allocation at all. Only a word seen for the first time is looked up in the
+ * alphabet, and checked against the stopwords by running it through the
+ * Mallet stopword pipe. Words that are stopwords, or that are not in an
+ * alphabet that does not grow, are kept with the id -1 and skipped.
+ *
+ * An encoder is bound to the alphabet it was created for and must not be
+ * shared between threads.
+ */
+public class FeatureEncoder {
+	private static final int SKIPPED = -1;
+
+	private final Alphabet alphabet;
+	private final boolean growAlphabet;
+	private final int maxWords;
+	private final Pipe stopwords = new TokenSequenceRemoveStopwords(false, false);
+
+	private String[] words;
+	private int[] ids;
+	private int size;
+	private int[] features = new int[64];
+
+	/**
+	 * @param alphabet the alphabet of the features
+	 * @param growAlphabet true if new words are added to the alphabet, false
+	 *            if words that are not in the alphabet are skipped
+	 * @param maxWords the number of words after which the table of seen words
+	 *            is cleared, which bounds the skipped words it keeps
+	 */
+	public FeatureEncoder(Alphabet alphabet, boolean growAlphabet, int maxWords) {
+		this.alphabet = alphabet;
+		this.growAlphabet = growAlphabet;
+		this.maxWords = maxWords;
+		clear();
+	}
+
+	/**
+	 * @return the features of the words of the text, in the order they occur
+	 */
+	public FeatureSequence encode(String text) {
+		int length = 0;
+		int i = 0;
+		while (i < text.length()) {
+			if (!isLetter(text.charAt(i))) {
+				i++;
+				continue;
+			}
+			int start = i;
+			int hash = 0;
+			for (; i < text.length() && isLetter(text.charAt(i)); i++) {
+				hash = 31 * hash + toLowerCase(text.charAt(i));
+			}
+			int id = id(text, start, i, hash);
+			if (id != SKIPPED) {
+				if (length == features.length) {
+					features = Arrays.copyOf(features, length * 2);
+				}
+				features[length++] = id;
+			}
+		}
+		return new FeatureSequence(alphabet, features, length);
+	}
+
+	/**
+	 * @return an instance like the ones the pipe makes of the text
+	 */
+	public Instance instance(String text) {
+		return new Instance(encode(text), null, null, null);
+	}
+
+	private int id(String text, int start, int end, int hash) {
+		int mask = words.length - 1;
+		int slot = mix(hash) & mask;
+		for (; words[slot] != null; slot = (slot + 1) & mask) {
+			if (equalsLowerCase(words[slot], text, start, end)) {
+				return ids[slot];
+			}
+		}
+
+		String word = text.substring(start, end).toLowerCase();
+		int id = isStopword(word) ? SKIPPED : alphabet.lookupIndex(word, growAlphabet);
+		if (size >= maxWords) {
+			clear();
+			mask = words.length - 1;
+			slot = mix(hash) & mask;
+		} else if (2 * (size + 1) > words.length) {
+			grow();
+			mask = words.length - 1;
+			slot = mix(hash) & mask;
+		}
+		while (words[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		words[slot] = word;
+		ids[slot] = id;
+		size++;
+		return id;
+	}
+
+	private boolean isStopword(String word) {
+		TokenSequence tokens = new TokenSequence();
+		tokens.add(new Token(word));
+		Instance piped = stopwords.pipe(new Instance(tokens, null, null, null));
+		return ((TokenSequence) piped.getData()).isEmpty();
+	}
+
+	private void clear() {
+		words = new String[1024];
+		ids = new int[1024];
+		size = 0;
+	}
+
+	private void grow() {
+		String[] oldWords = words;
+		int[] oldIds = ids;
+		words = new String[oldWords.length * 2];
+		ids = new int[oldIds.length * 2];
+		int mask = words.length - 1;
+		for (int i = 0; i < oldWords.length; i++) {
+			if (oldWords[i] != null) {
+				int slot = mix(oldWords[i].hashCode()) & mask;
+				while (words[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				words[slot] = oldWords[i];
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+
+	/* the hash of a word is String.hashCode() of its lowercase form */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equalsLowerCase(String word, String text, int start, int end) {
+		if (word.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			if (word.charAt(i) != toLowerCase(text.charAt(start + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* \p{Alpha} of the LEX_ALPHA pattern only matches ASCII letters */
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+}
@@ -0,0 +1,248 @@
+package aic2013.analyzer.stage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import aic2013.analyzer.filter.TextNormalizer;
+
+/**
+ * Finds known names, e.g. of brands, persons and places, in a text with an
+ * Aho-Corasick automaton, in a single pass over the text whatever the number
+ * of names. Names are matched case-insensitively and only as whole words;
+ * overlapping matches are resolved to the leftmost, and then the longest one.
+ * A name of several words matches the words separated by a single space.
+ *
+ * The texts are expected to be folded by {@link TextNormalizer}, like the
+ * filtered text of a tweet, so the names are folded the same way before they
+ * are matched: "Z\u00fcrich" is found in "Zurich", and reported as
+ * "Z\u00fcrich".
+ *
+ * A gazetteer is immutable once it is built and may be shared by all
+ * extractors.
+ */
+public class Gazetteer {
+	private static final int ROOT = 0;
+
+	/** the names as given, by their index */
+	private final String[] names;
+	/** the length of each name as it is matched, after folding */
+	private final int[] lengths;
+	/** the transitions of the automaton, keyed by state and character */
+	private final long[] transitionKeys;
+	private final int[] transitionTargets;
+	private final int transitionMask;
+	/** the state that continues the longest proper suffix of a state */
+	private final int[] failure;
+	/** the name that ends in a state, -1 if none */
+	private final int[] nameEnd;
+	/** the next state on the failure path that ends a name, -1 if none */
+	private final int[] outputLink;
+
+	/**
+	 * @param names the names to find; whitespace within a name is reduced to
+	 *            single spaces, empty names and names that fold to the same
+	 *            text as an earlier one are ignored
+	 */
+	public Gazetteer(Collection<String> names) {
+		List<String> distinctNames = new ArrayList<>();
+		List<Integer> distinctLengths = new ArrayList<>();
+		List<Map<Character, Integer>> goTo = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		goTo.add(new HashMap<Character, Integer>());
+		ends.add(-1);
+		int transitions = 0;
+		for (String name : names) {
+			name = name.trim().replaceAll("\\s+", " ");
+			String folded = TextNormalizer.normalize(name).trim().replaceAll("\\s+", " ");
+			if (folded.isEmpty()) {
+				continue;
+			}
+			int state = ROOT;
+			for (int i = 0; i < folded.length(); i++) {
+				char c = Character.toLowerCase(folded.charAt(i));
+				Integer next = goTo.get(state).get(c);
+				if (next == null) {
+					next = goTo.size();
+					goTo.get(state).put(c, next);
+					goTo.add(new HashMap<Character, Integer>());
+					ends.add(-1);
+					transitions++;
+				}
+				state = next;
+			}
+			if (ends.get(state) < 0) {
+				ends.set(state, distinctNames.size());
+				distinctNames.add(name);
+				distinctLengths.add(folded.length());
+			}
+		}
+
+		this.names = distinctNames.toArray(new String[distinctNames.size()]);
+		lengths = new int[this.names.length];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = distinctLengths.get(i);
+		}
+
+		/* open addressing with a load factor of at most 0.5 */
+		int capacity = Integer.highestOneBit(Math.max(transitions, 1) * 2) * 2;
+		transitionKeys = new long[capacity];
+		transitionTargets = new int[capacity];
+		transitionMask = capacity - 1;
+		Arrays.fill(transitionKeys, -1);
+		for (int state = 0; state < goTo.size(); state++) {
+			for (Map.Entry<Character, Integer> transition : goTo.get(state).entrySet()) {
+				long key = key(state, transition.getKey());
+				int slot = slot(key);
+				while (transitionKeys[slot] != -1) {
+					slot = (slot + 1) & transitionMask;
+				}
+				transitionKeys[slot] = key;
+				transitionTargets[slot] = transition.getValue();
+			}
+		}
+
+		int states = goTo.size();
+		failure = new int[states];
+		nameEnd = new int[states];
+		outputLink = new int[states];
+		for (int state = 0; state < states; state++) {
+			nameEnd[state] = ends.get(state);
+		}
+		outputLink[ROOT] = -1;
+		/* breadth first, so the failure state of a state is known before its children */
+		Queue<Integer> queue = new ArrayDeque<>();
+		queue.add(ROOT);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (Map.Entry<Character, Integer> transition : goTo.get(state).entrySet()) {
+				int child = transition.getValue();
+				int fail = ROOT;
+				if (state != ROOT) {
+					fail = failure[state];
+					while (fail != ROOT && next(fail, transition.getKey()) < 0) {
+						fail = failure[fail];
+					}
+					int next = next(fail, transition.getKey());
+					fail = next < 0 ? ROOT : next;
+				}
+				failure[child] = fail;
+				outputLink[child] = nameEnd[fail] >= 0 ? fail : outputLink[fail];
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Reads a gazetteer with one name per line. Empty lines and lines
+	 * starting with "#" are skipped.
+	 */
+	public static Gazetteer load(File file) throws IOException {
+		List<String> names = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith("#")) {
+					names.add(line);
+				}
+			}
+		}
+		return new Gazetteer(names);
+	}
+
+	/**
+	 * @return the number of distinct names
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return the names found in the text, as they are written in the
+	 *         gazetteer, in the order they occur
+	 */
+	public List<String> find(String text) {
+		/* the start and the name of every whole-word match, by the position it ends at */
+		List<int[]> matches = new ArrayList<>();
+		int state = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			if (Character.isWhitespace(c)) {
+				c = ' ';
+			}
+			int next = next(state, c);
+			while (next < 0 && state != ROOT) {
+				state = failure[state];
+				next = next(state, c);
+			}
+			state = next < 0 ? ROOT : next;
+
+			for (int output = nameEnd[state] >= 0 ? state : outputLink[state]; output >= 0; output = outputLink[output]) {
+				int name = nameEnd[output];
+				int start = i + 1 - lengths[name];
+				if (isWordBoundary(text, start) && isWordBoundary(text, i + 1)) {
+					matches.add(new int[] { start, name });
+				}
+			}
+		}
+
+		Collections.sort(matches, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				if (a[0] != b[0]) {
+					return a[0] < b[0] ? -1 : 1;
+				}
+				return Integer.compare(lengths[b[1]], lengths[a[1]]);
+			}
+		});
+		List<String> found = new ArrayList<>();
+		int end = 0;
+		for (int[] match : matches) {
+			if (match[0] >= end) {
+				found.add(names[match[1]]);
+				end = match[0] + lengths[match[1]];
+			}
+		}
+		return found;
+	}
+
+	private static boolean isWordBoundary(String text, int i) {
+		return i == 0 || i == text.length() || !Character.isLetterOrDigit(text.charAt(i - 1))
+				|| !Character.isLetterOrDigit(text.charAt(i));
+	}
+
+	private int next(int state, char c) {
+		long key = key(state, c);
+		for (int slot = slot(key);; slot = (slot + 1) & transitionMask) {
+			if (transitionKeys[slot] == key) {
+				return transitionTargets[slot];
+			}
+			if (transitionKeys[slot] == -1) {
+				return -1;
+			}
+		}
+	}
+
+	private static long key(int state, char c) {
+		return ((long) state << 16) | c;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & transitionMask;
+	}
+}
@@ -0,0 +1,90 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.metrics.PipelineMetrics.Stage;
+import aic2013.analyzer.metrics.StageTimer;
+import aic2013.common.entities.Topic;
+
+/**
+ * Finds the names of a {@link Gazetteer} in the filtered text of a tweet, as
+ * a cheap replacement for the {@link NerStage}. Every name found is a topic,
+ * like a run of words with the same CRF label is one.
+ *
+ * Given a fallback, the tweets the gazetteer finds no name in are passed on
+ * to the CRF classifier, so that the classifier only runs on the tweets
+ * about entities the gazetteer does not know.
+ */
+public class GazetteerStage implements ExtractionStage {
+	public static final String NAME = "gazetteer";
+
+	private final Gazetteer gazetteer;
+	private final NerStage fallback;
+	private final PipelineMetrics metrics;
+	private final StageTimer gazetteerTimer;
+
+	/**
+	 * @param gazetteer the gazetteer, which may be shared by the stages of
+	 *            all extractors
+	 * @param fallback the stage that extracts the tweets without a known
+	 *            name, or null to leave them without topics
+	 */
+	public GazetteerStage(Gazetteer gazetteer, NerStage fallback, PipelineMetrics metrics) {
+		this.gazetteer = gazetteer;
+		this.fallback = fallback;
+		this.metrics = metrics;
+		gazetteerTimer = metrics.timer(Stage.GAZETTEER);
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return false;
+	}
+
+	@Override
+	public boolean isLanguageIndependent() {
+		return false;
+	}
+
+	@Override
+	public List<Set<Topic>> extract(List<ExtractionContext> batch, long deadline) {
+		List<Set<Topic>> topics = new ArrayList<>(batch.size());
+		List<ExtractionContext> unknown = new ArrayList<>();
+		List<Integer> unknownIndexes = new ArrayList<>();
+		for (ExtractionContext tweet : batch) {
+			long start = System.nanoTime();
+			if (tweet.isDone() || start > deadline) {
+				topics.add(null);
+				continue;
+			}
+			Set<Topic> extractedTopics = new HashSet<>();
+			for (String name : gazetteer.find(tweet.getFilteredInput())) {
+				extractedTopics.add(new Topic(new String[] { name }));
+			}
+			gazetteerTimer.record(start);
+			if (extractedTopics.isEmpty() && fallback != null) {
+				unknown.add(tweet);
+				unknownIndexes.add(topics.size());
+			}
+			topics.add(extractedTopics);
+		}
+
+		if (!unknown.isEmpty()) {
+			metrics.nerFallbacks(unknown.size());
+			List<Set<Topic>> fallbackTopics = fallback.extract(unknown, deadline);
+			for (int i = 0; i < unknown.size(); i++) {
+				topics.set(unknownIndexes.get(i), fallbackTopics.get(i));
+			}
+		}
+		return topics;
+	}
+}
@@ -0,0 +1,71 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import aic2013.common.entities.Topic;
+
+/**
+ * Turns the hashtags of a tweet into topics, named by the tag without the
+ * "#". A hashtag is a "#" that does not follow a letter or digit, followed
+ * by letters, digits and underscores, like Twitter tokenizes them. The tags
+ * are read from the raw text, since the filter drops them, and are extracted
+ * whatever the language of the tweet, so that a tweet of nothing but tags
+ * keeps them.
+ */
+public class HashtagStage implements ExtractionStage {
+	public static final String NAME = "hashtags";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return false;
+	}
+
+	@Override
+	public boolean isLanguageIndependent() {
+		return true;
+	}
+
+	@Override
+	public List<Set<Topic>> extract(List<ExtractionContext> batch, long deadline) {
+		List<Set<Topic>> topics = new ArrayList<>(batch.size());
+		for (ExtractionContext tweet : batch) {
+			topics.add(tweet.isDone() ? null : extract(tweet.getInput()));
+		}
+		return topics;
+	}
+
+	static Set<Topic> extract(String input) {
+		/* a tag that occurs twice is one topic */
+		Map<String, Topic> tags = new LinkedHashMap<>();
+		int i = input.indexOf('#');
+		while (i >= 0) {
+			int end = i + 1;
+			while (end < input.length()) {
+				int c = input.codePointAt(end);
+				if (!Character.isLetterOrDigit(c) && c != '_') {
+					break;
+				}
+				end += Character.charCount(c);
+			}
+			boolean wordStart = i == 0 || !Character.isLetterOrDigit(input.codePointBefore(i));
+			if (wordStart && end > i + 1) {
+				String tag = input.substring(i + 1, end);
+				if (!tags.containsKey(tag)) {
+					tags.put(tag, new Topic(new String[] { tag }));
+				}
+			}
+			i = input.indexOf('#', end);
+		}
+		return new HashSet<>(tags.values());
+	}
+}
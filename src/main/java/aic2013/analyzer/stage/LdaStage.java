@@ -0,0 +1,329 @@
+package aic2013.analyzer.stage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import aic2013.analyzer.ExtractionException;
+import aic2013.analyzer.PretrainedTopicModel;
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.metrics.PipelineMetrics.Stage;
+import aic2013.analyzer.metrics.StageTimer;
+import aic2013.common.entities.Topic;
+import cc.mallet.pipe.CharSequence2TokenSequence;
+import cc.mallet.pipe.FeatureSequence2AugmentableFeatureVector;
+import cc.mallet.pipe.Pipe;
+import cc.mallet.pipe.SerialPipes;
+import cc.mallet.pipe.Target2Label;
+import cc.mallet.pipe.TokenSequence2FeatureSequence;
+import cc.mallet.pipe.TokenSequence2FeatureSequenceWithBigrams;
+import cc.mallet.pipe.TokenSequenceLowercase;
+import cc.mallet.pipe.TokenSequenceNGrams;
+import cc.mallet.pipe.TokenSequenceRemoveNonAlpha;
+import cc.mallet.pipe.TokenSequenceRemoveStopwords;
+import cc.mallet.topics.ParallelTopicModel;
+import cc.mallet.topics.TopicInferencer;
+import cc.mallet.types.Alphabet;
+import cc.mallet.types.FeatureSequence;
+import cc.mallet.types.Instance;
+import cc.mallet.types.InstanceList;
+import cc.mallet.util.CharSequenceLexer;
+
+/**
+ * Finds the topics of tweets with LDA: either by inferring them with a
+ * pre-trained model, or by training a small model on every single tweet.
+ * The filtered texts are turned into feature sequences by a
+ * {@link FeatureEncoder}, which yields the features of the Mallet pipe
+ * without its garbage.
+ *
+ * Without a pre-trained model, every word ever encoded is added to the
+ * alphabet of the pipe. Once the alphabet holds more than {@code maxAlphabetSize}
+ * words, the pipe is replaced by a new one with an empty alphabet before the
+ * next batch. The per-tweet models do not share any state across tweets, so
+ * this only costs re-adding the words of the following tweets.
+ *
+ * The stage only reads the texts of the batch and may run concurrently to the
+ * other stages.
+ */
+public class LdaStage implements ExtractionStage {
+	private static Logger logger = Logger.getLogger(LdaStage.class.getName());
+	/*
+	 * mallet logs the progress of every model it trains; held here since the
+	 * log manager only keeps weak references to loggers
+	 */
+	private static final Logger malletLogger = Logger.getLogger("cc.mallet");
+
+	static {
+		malletLogger.setLevel(Level.WARNING);
+	}
+
+	public static final String NAME = "lda";
+	public static final int MAX_ALPHABET_SIZE = 100000;
+
+	private Pipe instancePipe;
+	private FeatureEncoder encoder;
+	private final int maxAlphabetSize;
+	private int reportedAlphabetSize;
+	private final PretrainedTopicModel topicModel;
+	private final TopicInferencer inferencer;
+	private final PipelineMetrics metrics;
+	private final StageTimer vectorizeTimer;
+	private final StageTimer ldaTimer;
+
+	/**
+	 * @param topicModel a pre-trained model to infer the topics of tweets
+	 *            with, or null to train a new model for every tweet
+	 * @param metrics the metrics the vectorization and the LDA of every tweet
+	 *            are recorded in
+	 * @param maxAlphabetSize the number of words after which the pipe is
+	 *            replaced, if there is no pre-trained model
+	 */
+	public LdaStage(PretrainedTopicModel topicModel, PipelineMetrics metrics, int maxAlphabetSize) {
+		this.topicModel = topicModel;
+		this.metrics = metrics;
+		this.maxAlphabetSize = maxAlphabetSize;
+		vectorizeTimer = metrics.timer(Stage.VECTORIZE);
+		ldaTimer = metrics.timer(Stage.LDA);
+
+		if (topicModel == null) {
+			instancePipe = createMalletPipe(false, false, true, true, null);
+			inferencer = null;
+		} else {
+			instancePipe = createMalletPipe(false, false, true, true,
+					topicModel.getAlphabet());
+			inferencer = topicModel.createInferencer();
+		}
+		encoder = new FeatureEncoder(instancePipe.getDataAlphabet(), topicModel == null, maxAlphabetSize);
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return true;
+	}
+
+	@Override
+	public boolean isLanguageIndependent() {
+		return false;
+	}
+
+	@Override
+	public List<Set<Topic>> extract(List<ExtractionContext> batch, long deadline)
+			throws ExtractionException {
+		if (topicModel == null
+				&& instancePipe.getDataAlphabet().size() > maxAlphabetSize) {
+			instancePipe = createMalletPipe(false, false, true, true, null);
+			encoder = new FeatureEncoder(instancePipe.getDataAlphabet(), true, maxAlphabetSize);
+			metrics.alphabetRotated();
+		}
+
+		List<String> filteredInputs = new ArrayList<>(batch.size());
+		for (ExtractionContext tweet : batch) {
+			if (!tweet.isDone()) {
+				filteredInputs.add(tweet.getFilteredInput());
+			}
+		}
+		long start = System.nanoTime();
+		List<Instance> instances = text2Vectors(filteredInputs);
+		vectorizeTimer.record(start);
+		if (topicModel == null) {
+			int alphabetSize = instancePipe.getDataAlphabet().size();
+			metrics.alphabetGrown(alphabetSize - reportedAlphabetSize);
+			reportedAlphabetSize = alphabetSize;
+		}
+
+		List<Set<Topic>> topics = new ArrayList<>(batch.size());
+		int instance = 0;
+		for (ExtractionContext tweet : batch) {
+			if (tweet.isDone()) {
+				topics.add(null);
+				continue;
+			}
+			start = System.nanoTime();
+			if (start > deadline) {
+				topics.add(null);
+			} else {
+				topics.add(extract(instances.get(instance), tweet.getInput(),
+						tweet.getFilteredInput()));
+				ldaTimer.record(start);
+			}
+			instance++;
+		}
+		return topics;
+	}
+
+	Set<Topic> extract(Instance instance, String input,
+			String filteredInput) throws ExtractionException {
+		Set<Topic> extractedTopics = null;
+		try {
+			if (topicModel != null) {
+				extractedTopics = topicModel.infer(inferencer, instance);
+			} else {
+				InstanceList training = new InstanceList(instancePipe);
+				training.add(instance);
+				extractedTopics = vectors2Topic(training, 3, 200, 10, 1);
+			}
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.WARNING, "LDA failed for tweet: " + input
+					+ ", filtered tweet: " + filteredInput, e);
+		}
+		if (extractedTopics == null) {
+			extractedTopics = new HashSet<>();
+		}
+		return extractedTopics;
+	}
+
+	public static Pipe createMalletPipe(boolean keepSequenceBigrams,
+			boolean preserveCase, boolean removeStopwords,
+			boolean keepSequence, Alphabet dataAlphabet) {
+		// Create a list of pipes that will be added to a SerialPipes object
+		// later
+		ArrayList<Pipe> pipeList = new ArrayList<Pipe>();
+
+		// Convert the "target" object into a numeric index
+		// into a LabelAlphabet.
+		pipeList.add(new Target2Label());
+
+		// The "data" field already holds the filtered tweet text as a String,
+		// so there is no file to save as "source" or to decode into a
+		// CharSequence.
+
+		//
+		// Tokenize the input: first compile the tokenization pattern
+		//
+
+		Pattern tokenPattern = null;
+
+		if (keepSequenceBigrams) {
+			// We do not want to record bigrams across punctuation,
+			// so we need to keep non-word tokens.
+			tokenPattern = CharSequenceLexer.LEX_NONWHITESPACE_CLASSES;
+		} else {
+			// Otherwise, try to compile the regular expression pattern.
+			String tokenRegex = CharSequenceLexer.LEX_ALPHA.toString();
+			try {
+				tokenPattern = Pattern.compile(tokenRegex);
+			} catch (PatternSyntaxException pse) {
+				throw new IllegalArgumentException(
+						"The token regular expression (" + tokenRegex
+								+ ") was invalid: " + pse.getMessage());
+			}
+		}
+
+		// Add the tokenizer
+		pipeList.add(new CharSequence2TokenSequence(tokenPattern));
+
+		if (!preserveCase) {
+			pipeList.add(new TokenSequenceLowercase());
+		}
+
+		if (keepSequenceBigrams) {
+			// Remove non-word tokens, but record the fact that they
+			// were there.
+			pipeList.add(new TokenSequenceRemoveNonAlpha(true));
+		}
+
+		// Stopword removal with the default built-in English list.
+		if (removeStopwords) {
+			TokenSequenceRemoveStopwords stopwordFilter = new TokenSequenceRemoveStopwords(
+					false, keepSequenceBigrams);
+			pipeList.add(stopwordFilter);
+		}
+
+		// gramSizes is an integer array, with default value [1].
+		// Check if we have a non-default value.
+		int[] gramSizes = new int[] { 1 };
+		if (!(gramSizes.length == 1 && gramSizes[0] == 1)) {
+			pipeList.add(new TokenSequenceNGrams(gramSizes));
+		}
+
+		// So far we have a sequence of Token objects that contain
+		// String values. Look these up in an alphabet and store integer IDs
+		// ("features") instead of Strings.
+		if (keepSequenceBigrams) {
+			pipeList.add(new TokenSequence2FeatureSequenceWithBigrams());
+		} else {
+			if (dataAlphabet != null) {
+				pipeList.add(new TokenSequence2FeatureSequence(dataAlphabet));
+			} else {
+				pipeList.add(new TokenSequence2FeatureSequence());
+			}
+		}
+
+		// For many applications, we do not need to preserve the sequence of
+		// features,
+		// only the number of times times a feature occurs.
+		if (!(keepSequence || keepSequenceBigrams)) {
+			boolean binaryFeatures = false;
+			pipeList.add(new FeatureSequence2AugmentableFeatureVector(
+					binaryFeatures));
+		}
+
+		return new SerialPipes(pipeList);
+	}
+
+	List<Instance> text2Vectors(List<String> filteredInputs) {
+		List<Instance> instances = new ArrayList<>(filteredInputs.size());
+		for (String filteredInput : filteredInputs) {
+			instances.add(encoder.instance(filteredInput));
+		}
+		return instances;
+	}
+
+	private Set<Topic> vectors2Topic(InstanceList training, int numTopics, int numIterations, int optimizeInterval, int numThreads) throws ExtractionException {
+		if (training.size() > 0 && training.get(0) != null) {
+			Object data = training.get(0).getData();
+			if (!(data instanceof FeatureSequence)) {
+				throw new ExtractionException("Topic modeling only supports feature sequences, not "
+						+ (data == null ? null : data.getClass().getName()));
+			}
+		}
+
+		double alpha = 50.0;
+		double beta = 0.01;
+		ParallelTopicModel topicModel = new ParallelTopicModel(numTopics, alpha,
+				beta);
+		topicModel.addInstances(training);
+
+		// Topic displays are logged to the mallet logger on every interval;
+		// nobody reads them for a model that only lives for one tweet.
+		int showTopicsInterval = 0;
+		int topWords = 20;
+		topicModel.setTopicDisplay(showTopicsInterval, topWords);
+
+		topicModel.setNumIterations(numIterations);
+		topicModel.setOptimizeInterval(optimizeInterval);
+		int optimizeBurnIn = 200;
+		topicModel.setBurninPeriod(optimizeBurnIn);
+		boolean useSymmetricAlpha = false;
+		topicModel.setSymmetricAlpha(useSymmetricAlpha);
+		topicModel.setNumThreads(numThreads);
+
+		try {
+			topicModel.estimate();
+		} catch (IOException e) {
+			throw new ExtractionException(e);
+		}
+
+		Object[][] topicStrings = topicModel.getTopWords(topWords);
+		Set<Topic> result = new HashSet<>();
+		for(int i = 0; i < topicStrings.length; i++){
+			String[] keywords = new String[topicStrings[i].length];
+			for(int j = 0; j < keywords.length; j++){
+				keywords[j] = (String) topicStrings[i][j];
+			}
+			result.add(new Topic(keywords));
+		}
+		return result;
+	}
+}
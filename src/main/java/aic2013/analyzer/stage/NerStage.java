@@ -0,0 +1,102 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.metrics.PipelineMetrics.Stage;
+import aic2013.analyzer.metrics.StageTimer;
+import aic2013.common.entities.Topic;
+import edu.stanford.nlp.ie.AbstractSequenceClassifier;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Finds the persons, organizations and locations in the filtered text of a
+ * tweet with the Stanford CRF classifier. Consecutive words with the same
+ * label form one topic. The labeled tokens are kept in the context for the
+ * {@link aic2013.analyzer.ExtractionTracer}.
+ */
+public class NerStage implements ExtractionStage {
+	public static final String NAME = "ner";
+
+	private final AbstractSequenceClassifier<CoreLabel> classifier;
+	private final StageTimer nerTimer;
+
+	/**
+	 * @param classifier the classifier, which is only read and may be shared
+	 *            by the stages of all extractors
+	 */
+	public NerStage(AbstractSequenceClassifier<CoreLabel> classifier, PipelineMetrics metrics) {
+		this.classifier = classifier;
+		nerTimer = metrics.timer(Stage.NER);
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return false;
+	}
+
+	@Override
+	public boolean isLanguageIndependent() {
+		return false;
+	}
+
+	@Override
+	public List<Set<Topic>> extract(List<ExtractionContext> batch, long deadline) {
+		List<Set<Topic>> topics = new ArrayList<>(batch.size());
+		for (ExtractionContext tweet : batch) {
+			long start = System.nanoTime();
+			if (tweet.isDone() || start > deadline) {
+				topics.add(null);
+				continue;
+			}
+			Set<Topic> extractedTopics = new HashSet<>();
+			tweet.setSentences(extractNamedEntities(tweet.getFilteredInput(), extractedTopics));
+			nerTimer.record(start);
+			topics.add(extractedTopics);
+		}
+		return topics;
+	}
+
+	/**
+	 * @return the tokens of the input with their CRF labels
+	 */
+	List<List<CoreLabel>> extractNamedEntities(String filteredInput,
+			Set<Topic> extractedTopics) {
+		// Stanford NER
+
+		List<List<CoreLabel>> out = classifier.classify(filteredInput);
+		for (List<CoreLabel> sentence : out) {
+			String prevAnnotation = null;
+			Topic prevTopic = null;
+			for (CoreLabel word : sentence) {
+				String annotation = word
+						.get(CoreAnnotations.AnswerAnnotation.class);
+				if (annotation.equals(prevAnnotation)) {
+					// put connected words that have the same annotation
+					// into the same topic
+					// like "Joe/PERSON Miller/PERSON" --> Topic(["Joe",
+					// "Miller"])
+					prevTopic.getName()[0] += " " + word.word();
+				} else if (!"O".equals(annotation)) {
+					// some different annotation than the preceding one
+					prevAnnotation = annotation;
+					prevTopic = new Topic(new String[] { word.word() });
+					extractedTopics.add(prevTopic);
+				} else {
+					// we have a /O annotation
+					prevAnnotation = null;
+				}
+			}
+		}
+		return out;
+	}
+}
@@ -0,0 +1,182 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aic2013.analyzer.ClassifierRegistry;
+import aic2013.analyzer.PretrainedTopicModel;
+import aic2013.analyzer.metrics.PipelineMetrics;
+
+/**
+ * The stages of the extractors of a deployment, in the order they run, with
+ * their budgets. It is configured by a comma-separated list of stage names,
+ * each optionally followed by ":" and a budget in milliseconds per tweet,
+ * e.g. "hashtags,ner:5,lda:20". The known stages are
+ * {@value HashtagStage#NAME}, {@value GazetteerStage#NAME},
+ * {@value NerStage#NAME} and {@value LdaStage#NAME}.
+ *
+ * A stage gets its budget times the number of tweets of a batch; the tweets
+ * it has not reached by then get none of its topics. Once a tweet has
+ * {@code shortCircuitTopics} topics, the following stages skip it, so cheap
+ * stages placed first spare the expensive ones the tweets they already
+ * covered.
+ *
+ * The plan is shared by all extractors; every extractor creates stages of its
+ * own.
+ */
+public class StagePlan {
+	public static final String DEFAULT_STAGES = HashtagStage.NAME + "," + NerStage.NAME + "," + LdaStage.NAME;
+
+	private final String[] names;
+	private final long[] budgetNanos;
+	private final int shortCircuitTopics;
+	private final ClassifierRegistry classifiers;
+	private final Gazetteer gazetteer;
+	private final boolean gazetteerFallback;
+	private final PretrainedTopicModel topicModel;
+	private final PipelineMetrics metrics;
+	private final int maxAlphabetSize;
+
+	/**
+	 * @param stages the stages as described above
+	 * @param shortCircuitTopics the number of topics after which a tweet
+	 *            skips the remaining stages, 0 to run all stages on every
+	 *            tweet
+	 * @param classifiers the registry the CRF classifier is taken from, if a
+	 *            stage needs it
+	 * @param gazetteer the names the gazetteer stage finds, or null if there
+	 *            is no gazetteer stage
+	 * @param gazetteerFallback true if the gazetteer stage passes the tweets
+	 *            it finds no name in on to the CRF classifier
+	 * @param topicModel a pre-trained LDA model, or null to train a model per
+	 *            tweet
+	 * @param metrics the metrics the stages are recorded in
+	 * @param maxAlphabetSize the number of words after which the mallet pipe
+	 *            of an LDA stage is replaced if there is no pre-trained model
+	 * @throws IllegalArgumentException if a stage is unknown, configured
+	 *             twice or has an invalid budget, or if the gazetteer stage
+	 *             has no gazetteer
+	 */
+	public StagePlan(String stages, int shortCircuitTopics, ClassifierRegistry classifiers, Gazetteer gazetteer,
+			boolean gazetteerFallback, PretrainedTopicModel topicModel, PipelineMetrics metrics, int maxAlphabetSize) {
+		List<String> stageNames = new ArrayList<>();
+		List<Long> budgets = new ArrayList<>();
+		for (String stage : stages.split(",")) {
+			stage = stage.trim();
+			if (stage.isEmpty()) {
+				continue;
+			}
+			int separator = stage.indexOf(':');
+			String name = separator < 0 ? stage : stage.substring(0, separator).trim();
+			long budgetMillis = separator < 0 ? 0 : Long.parseLong(stage.substring(separator + 1).trim());
+			if (!Arrays.asList(HashtagStage.NAME, GazetteerStage.NAME, NerStage.NAME, LdaStage.NAME).contains(name)) {
+				throw new IllegalArgumentException("Unknown extraction stage " + name);
+			}
+			if (stageNames.contains(name)) {
+				throw new IllegalArgumentException("Extraction stage " + name + " is configured twice");
+			}
+			if (budgetMillis < 0) {
+				throw new IllegalArgumentException("Negative budget for extraction stage " + name);
+			}
+			if (name.equals(GazetteerStage.NAME) && gazetteer == null) {
+				throw new IllegalArgumentException("Extraction stage " + name + " needs a gazetteer");
+			}
+			stageNames.add(name);
+			budgets.add(budgetMillis * 1000000);
+		}
+
+		names = stageNames.toArray(new String[stageNames.size()]);
+		budgetNanos = new long[budgets.size()];
+		for (int i = 0; i < budgetNanos.length; i++) {
+			budgetNanos[i] = budgets.get(i);
+		}
+		this.shortCircuitTopics = shortCircuitTopics;
+		this.classifiers = classifiers;
+		this.gazetteer = gazetteer;
+		this.gazetteerFallback = gazetteerFallback;
+		this.topicModel = topicModel;
+		this.metrics = metrics;
+		this.maxAlphabetSize = maxAlphabetSize;
+	}
+
+	/**
+	 * @return new instances of the stages, in the order they run
+	 */
+	public List<ExtractionStage> createStages() {
+		List<ExtractionStage> stages = new ArrayList<>(names.length);
+		for (String name : names) {
+			switch (name) {
+			case HashtagStage.NAME:
+				stages.add(new HashtagStage());
+				break;
+			case GazetteerStage.NAME:
+				stages.add(new GazetteerStage(gazetteer,
+						gazetteerFallback ? new NerStage(classifiers.getClassifier(), metrics) : null, metrics));
+				break;
+			case NerStage.NAME:
+				stages.add(new NerStage(classifiers.getClassifier(), metrics));
+				break;
+			case LdaStage.NAME:
+				stages.add(new LdaStage(topicModel, metrics, maxAlphabetSize));
+				break;
+			default:
+				throw new AssertionError(name);
+			}
+		}
+		return stages;
+	}
+
+	/**
+	 * @return true if a stage needs the CRF classifier
+	 */
+	public boolean requiresClassifier() {
+		return requiresClassifier(Arrays.asList(names), gazetteerFallback);
+	}
+
+	/**
+	 * @return true if a stage of the given stages needs the CRF classifier,
+	 *         without validating them
+	 */
+	public static boolean requiresClassifier(String stages, boolean gazetteerFallback) {
+		List<String> stageNames = new ArrayList<>();
+		for (String stage : stages.split(",")) {
+			stageNames.add(stage.split(":")[0].trim());
+		}
+		return requiresClassifier(stageNames, gazetteerFallback);
+	}
+
+	private static boolean requiresClassifier(List<String> stageNames, boolean gazetteerFallback) {
+		return stageNames.contains(NerStage.NAME) || (gazetteerFallback && stageNames.contains(GazetteerStage.NAME));
+	}
+
+	/**
+	 * @return the budget of the stage per tweet, 0 if it has none
+	 */
+	public long getBudgetNanos(int stage) {
+		return budgetNanos[stage];
+	}
+
+	public int getShortCircuitTopics() {
+		return shortCircuitTopics;
+	}
+
+	public PipelineMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(names[i]);
+			if (budgetNanos[i] > 0) {
+				sb.append(':').append(budgetNanos[i] / 1000000);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,68 @@
+package aic2013.analyzer.trending;
+
+import java.util.Arrays;
+
+/**
+ * Approximate counts of a stream of keys in a fixed amount of memory. An
+ * estimate is never lower than the true count, and exceeds it by at most
+ * {@code e / width} of all counts added, with a probability of
+ * {@code 1 - e^-depth}.
+ *
+ * Not thread-safe.
+ */
+public class CountMinSketch {
+	private final int[][] counts;
+	private final int mask;
+
+	/**
+	 * @param width the counters per row, rounded up to a power of two
+	 * @param depth the number of rows, each with its own hash function
+	 */
+	public CountMinSketch(int width, int depth) {
+		int powerOfTwo = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+		counts = new int[depth][powerOfTwo];
+		mask = powerOfTwo - 1;
+	}
+
+	/**
+	 * @return the estimated count of the key after adding to it
+	 */
+	public int add(String key, int count) {
+		int h1 = mix(key.hashCode());
+		int h2 = mix(h1 ^ 0x9e3779b9);
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < counts.length; row++) {
+			int[] rowCounts = counts[row];
+			int i = (h1 + row * h2) & mask;
+			rowCounts[i] += count;
+			estimate = Math.min(estimate, rowCounts[i]);
+		}
+		return estimate;
+	}
+
+	public int estimate(String key) {
+		int h1 = mix(key.hashCode());
+		int h2 = mix(h1 ^ 0x9e3779b9);
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < counts.length; row++) {
+			estimate = Math.min(estimate, counts[row][(h1 + row * h2) & mask]);
+		}
+		return estimate;
+	}
+
+	public void clear() {
+		for (int[] rowCounts : counts) {
+			Arrays.fill(rowCounts, 0);
+		}
+	}
+
+	/* the finalizer of MurmurHash3, which spreads the bits of String.hashCode() */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
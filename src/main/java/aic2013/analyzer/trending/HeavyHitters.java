@@ -0,0 +1,71 @@
+package aic2013.analyzer.trending;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The keys with the highest counts seen so far, at most {@code capacity} of
+ * them. Like Space-Saving, a new key replaces the key with the lowest count
+ * once the set is full, but only if its count, as estimated by a
+ * {@link CountMinSketch}, exceeds that lowest count. Rare keys therefore do
+ * not churn the set.
+ *
+ * Not thread-safe.
+ */
+public class HeavyHitters {
+	private final int capacity;
+	private final Map<String, Integer> counts;
+	private String minKey;
+	private int minCount;
+
+	public HeavyHitters(int capacity) {
+		this.capacity = capacity;
+		counts = new HashMap<>(capacity * 2);
+	}
+
+	/**
+	 * @param estimate the current count of the key
+	 */
+	public void offer(String key, int estimate) {
+		if (counts.containsKey(key)) {
+			counts.put(key, estimate);
+			if (key.equals(minKey)) {
+				updateMin();
+			}
+			return;
+		}
+		if (counts.size() < capacity) {
+			counts.put(key, estimate);
+			if (minKey == null || estimate < minCount) {
+				minKey = key;
+				minCount = estimate;
+			}
+			return;
+		}
+		if (estimate > minCount) {
+			counts.remove(minKey);
+			counts.put(key, estimate);
+			updateMin();
+		}
+	}
+
+	public Set<String> keys() {
+		return counts.keySet();
+	}
+
+	public void clear() {
+		counts.clear();
+		minKey = null;
+	}
+
+	private void updateMin() {
+		minKey = null;
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			if (minKey == null || entry.getValue() < minCount) {
+				minKey = entry.getKey();
+				minCount = entry.getValue();
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package aic2013.analyzer.trending;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aic2013.analyzer.persistence.PersistenceException;
+
+/**
+ * Stores the top topics of a window as {@code TrendingTopic} nodes with the
+ * window name, the consumer, the rank, the topic name, the number of
+ * mentions and the update time, one transaction per call to
+ * {@link #store(Map, long)}. Every consumer only counts the tweets it
+ * extracts, so it only replaces its own nodes, and deletes those of its ranks
+ * that are no longer filled. Nodes that were not updated for a while, e.g.
+ * of a consumer that was stopped, are deleted by the consumers that are
+ * still running.
+ *
+ * The trending view combines the counts of all consumers, e.g. with
+ * {@code MATCH (t:TrendingTopic {window: '15m'}) RETURN t.topic AS topic,
+ * sum(t.mentions) AS mentions ORDER BY mentions DESC LIMIT 20}. A topic that
+ * is not among the top topics of some consumer is missing their counts, so
+ * the combined counts are a lower bound.
+ */
+public class Neo4jTrendStore implements TrendStore {
+	private static Logger logger = Logger.getLogger(Neo4jTrendStore.class.getName());
+
+	private static final String MERGE_RANK = "MERGE (t:TrendingTopic {window: {1}, consumer: {2}, rank: {3}}) "
+			+ "SET t.topic = {4}, t.mentions = {5}, t.updated = {6}";
+	private static final String DELETE_RANKS = "MATCH (t:TrendingTopic {window: {1}, consumer: {2}}) "
+			+ "WHERE t.rank >= {3} DELETE t";
+	private static final String DELETE_STALE = "MATCH (t:TrendingTopic) WHERE t.updated < {1} DELETE t";
+
+	private final Connection connection;
+	private final String consumerId;
+	private final long staleMillis;
+
+	/**
+	 * @param connection a connection of its own, which is switched to manual
+	 *            commits
+	 * @param consumerId the id of the consumer that stores its top topics,
+	 *            unique among the running consumers
+	 * @param staleMillis the time after which the nodes of a consumer that
+	 *            did not update them are deleted
+	 */
+	public Neo4jTrendStore(Connection connection, String consumerId, long staleMillis) throws SQLException {
+		this.connection = connection;
+		this.consumerId = consumerId;
+		this.staleMillis = staleMillis;
+		connection.setAutoCommit(false);
+	}
+
+	@Override
+	public void store(Map<String, List<TrendingTopic>> top, long updated) throws PersistenceException {
+		try (PreparedStatement merge = connection.prepareStatement(MERGE_RANK);
+				PreparedStatement delete = connection.prepareStatement(DELETE_RANKS);
+				PreparedStatement deleteStale = connection.prepareStatement(DELETE_STALE)) {
+			for (Map.Entry<String, List<TrendingTopic>> window : top.entrySet()) {
+				List<TrendingTopic> topics = window.getValue();
+				for (int rank = 0; rank < topics.size(); rank++) {
+					merge.setString(1, window.getKey());
+					merge.setString(2, consumerId);
+					merge.setInt(3, rank);
+					merge.setString(4, topics.get(rank).getName());
+					merge.setLong(5, topics.get(rank).getCount());
+					merge.setLong(6, updated);
+					merge.executeUpdate();
+				}
+				delete.setString(1, window.getKey());
+				delete.setString(2, consumerId);
+				delete.setInt(3, topics.size());
+				delete.executeUpdate();
+			}
+			deleteStale.setLong(1, updated - staleMillis);
+			deleteStale.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException ex) {
+				logger.log(Level.SEVERE, "Rollback failed", ex);
+			}
+			throw new PersistenceException(e);
+		}
+	}
+}
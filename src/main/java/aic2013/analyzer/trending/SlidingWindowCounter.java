@@ -0,0 +1,112 @@
+package aic2013.analyzer.trending;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Approximate mention counts of topics over a sliding window, e.g. the last
+ * 15 minutes. The window is a ring of buckets that each cover a fixed slice
+ * of time with their own {@link CountMinSketch} and {@link HeavyHitters}; a
+ * bucket is cleared and reused once its slice has left the window. The
+ * window therefore slides in steps of one bucket.
+ *
+ * The top topics of the window are picked among the heavy hitters of its
+ * buckets, by their counts summed over all buckets.
+ */
+public class SlidingWindowCounter {
+	private static final Comparator<TrendingTopic> BY_COUNT = new Comparator<TrendingTopic>() {
+		@Override
+		public int compare(TrendingTopic a, TrendingTopic b) {
+			int order = Long.compare(b.getCount(), a.getCount());
+			return order != 0 ? order : a.getName().compareTo(b.getName());
+		}
+	};
+
+	private static class Bucket {
+		private final CountMinSketch sketch;
+		private final HeavyHitters heavyHitters;
+		/* the slice of time the bucket counts, -1 while unused */
+		private long slice = -1;
+
+		private Bucket(int sketchWidth, int sketchDepth, int candidates) {
+			sketch = new CountMinSketch(sketchWidth, sketchDepth);
+			heavyHitters = new HeavyHitters(candidates);
+		}
+	}
+
+	private final String name;
+	private final long bucketMillis;
+	private final Bucket[] buckets;
+
+	/**
+	 * @param name the name of the window, e.g. "15m"
+	 * @param windowMillis the length of the window
+	 * @param bucketCount the number of buckets the window is divided into
+	 * @param candidates the number of heavy hitters kept per bucket
+	 */
+	public SlidingWindowCounter(String name, long windowMillis, int bucketCount, int sketchWidth, int sketchDepth,
+			int candidates) {
+		this.name = name;
+		bucketMillis = Math.max(1, windowMillis / bucketCount);
+		buckets = new Bucket[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			buckets[i] = new Bucket(sketchWidth, sketchDepth, candidates);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Counts one mention of each of the topics at the given time.
+	 */
+	public synchronized void add(Collection<String> topics, long now) {
+		Bucket bucket = bucket(now / bucketMillis);
+		for (String topic : topics) {
+			bucket.heavyHitters.offer(topic, bucket.sketch.add(topic, 1));
+		}
+	}
+
+	/**
+	 * @return the topics with the most mentions in the window ending at the
+	 *         given time, most mentioned first
+	 */
+	public synchronized List<TrendingTopic> top(int count, long now) {
+		long currentSlice = now / bucketMillis;
+		List<Bucket> live = new ArrayList<>(buckets.length);
+		Set<String> candidates = new HashSet<>();
+		for (Bucket bucket : buckets) {
+			if (bucket.slice > currentSlice - buckets.length && bucket.slice <= currentSlice) {
+				live.add(bucket);
+				candidates.addAll(bucket.heavyHitters.keys());
+			}
+		}
+
+		List<TrendingTopic> topics = new ArrayList<>(candidates.size());
+		for (String candidate : candidates) {
+			long estimate = 0;
+			for (Bucket bucket : live) {
+				estimate += bucket.sketch.estimate(candidate);
+			}
+			topics.add(new TrendingTopic(candidate, estimate));
+		}
+		Collections.sort(topics, BY_COUNT);
+		return new ArrayList<>(topics.subList(0, Math.min(count, topics.size())));
+	}
+
+	private Bucket bucket(long slice) {
+		Bucket bucket = buckets[(int) (slice % buckets.length)];
+		if (bucket.slice != slice) {
+			bucket.sketch.clear();
+			bucket.heavyHitters.clear();
+			bucket.slice = slice;
+		}
+		return bucket;
+	}
+}
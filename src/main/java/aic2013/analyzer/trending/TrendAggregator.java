@@ -0,0 +1,175 @@
+package aic2013.analyzer.trending;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aic2013.analyzer.persistence.PersistenceException;
+
+/**
+ * Counts the topics of the extracted tweets over the last minute, 15 minutes
+ * and hour, and serves the top topics of each window from memory.
+ *
+ * Given a {@link TrendStore}, the top topics of all windows are stored
+ * periodically by a single flusher thread, so that the trending view can be
+ * read without aggregating the relations of the graph.
+ */
+public class TrendAggregator implements TrendAggregatorMBean {
+	private static Logger logger = Logger.getLogger(TrendAggregator.class.getName());
+
+	private static final int SKETCH_WIDTH = 4096;
+	private static final int SKETCH_DEPTH = 4;
+
+	private final SlidingWindowCounter lastMinute;
+	private final SlidingWindowCounter last15Minutes;
+	private final SlidingWindowCounter lastHour;
+	private final SlidingWindowCounter[] windows;
+	private final int topCount;
+	private final TrendStore store;
+	private final ScheduledExecutorService flusher;
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong failedFlushes = new AtomicLong();
+
+	/**
+	 * @param topCount the number of top topics per window
+	 * @param store the store the top topics are flushed to, or null to only
+	 *            keep them in memory
+	 * @param flushIntervalMillis the time between two flushes
+	 */
+	public TrendAggregator(int topCount, TrendStore store, long flushIntervalMillis) {
+		this.topCount = topCount;
+		this.store = store;
+		/* every bucket keeps a few times more candidates than are reported */
+		int candidates = topCount * 4;
+		lastMinute = new SlidingWindowCounter("1m", TimeUnit.MINUTES.toMillis(1), 12, SKETCH_WIDTH, SKETCH_DEPTH,
+				candidates);
+		last15Minutes = new SlidingWindowCounter("15m", TimeUnit.MINUTES.toMillis(15), 15, SKETCH_WIDTH, SKETCH_DEPTH,
+				candidates);
+		lastHour = new SlidingWindowCounter("1h", TimeUnit.HOURS.toMillis(1), 12, SKETCH_WIDTH, SKETCH_DEPTH,
+				candidates);
+		windows = new SlidingWindowCounter[] { lastMinute, last15Minutes, lastHour };
+
+		if (store == null) {
+			flusher = null;
+		} else {
+			flusher = Executors.newSingleThreadScheduledExecutor();
+			flusher.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Counts one mention of each of the topics of a tweet, or of a batch of
+	 * tweets.
+	 */
+	public void record(Collection<String> topics) {
+		long now = System.currentTimeMillis();
+		for (SlidingWindowCounter window : windows) {
+			window.add(topics, now);
+		}
+	}
+
+	/**
+	 * @return the top topics of every window by the window name, e.g. "15m"
+	 */
+	public Map<String, List<TrendingTopic>> top() {
+		long now = System.currentTimeMillis();
+		Map<String, List<TrendingTopic>> top = new LinkedHashMap<>();
+		for (SlidingWindowCounter window : windows) {
+			top.put(window.getName(), window.top(topCount, now));
+		}
+		return top;
+	}
+
+	/**
+	 * Flushes the top topics a last time and stops the flusher thread.
+	 */
+	public void close() {
+		close(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Flushes the top topics a last time and stops the flusher thread, unless
+	 * the flushes take longer than the timeout, in which case the flusher
+	 * thread is interrupted.
+	 *
+	 * @return true if the last flush completed, or failed, in time
+	 */
+	public boolean close(long timeout, TimeUnit unit) {
+		if (flusher == null) {
+			return true;
+		}
+		/* runs after a flush that is in progress, on the flusher thread, so that the timeout covers it */
+		flusher.execute(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+		flusher.shutdown();
+		try {
+			if (flusher.awaitTermination(timeout, unit)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flusher.shutdownNow();
+		return false;
+	}
+
+	private void flush() {
+		try {
+			store.store(top(), System.currentTimeMillis());
+			flushes.incrementAndGet();
+		} catch (PersistenceException | RuntimeException e) {
+			logger.log(Level.WARNING, "Could not store the trending topics", e);
+			failedFlushes.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String[] getTopLastMinute() {
+		return format(lastMinute);
+	}
+
+	@Override
+	public String[] getTopLast15Minutes() {
+		return format(last15Minutes);
+	}
+
+	@Override
+	public String[] getTopLastHour() {
+		return format(lastHour);
+	}
+
+	@Override
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	@Override
+	public long getFailedFlushes() {
+		return failedFlushes.get();
+	}
+
+	private String[] format(SlidingWindowCounter window) {
+		List<String> formatted = new ArrayList<>();
+		for (TrendingTopic topic : window.top(topCount, System.currentTimeMillis())) {
+			formatted.add(topic.toString());
+		}
+		return formatted.toArray(new String[formatted.size()]);
+	}
+}
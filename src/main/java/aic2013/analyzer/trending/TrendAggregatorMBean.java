@@ -0,0 +1,16 @@
+package aic2013.analyzer.trending;
+
+/**
+ * The currently trending topics, formatted as "topic=mentions".
+ */
+public interface TrendAggregatorMBean {
+	String[] getTopLastMinute();
+
+	String[] getTopLast15Minutes();
+
+	String[] getTopLastHour();
+
+	long getFlushes();
+
+	long getFailedFlushes();
+}
@@ -0,0 +1,19 @@
+package aic2013.analyzer.trending;
+
+import java.util.List;
+import java.util.Map;
+
+import aic2013.analyzer.persistence.PersistenceException;
+
+/**
+ * Persists the aggregated trending topics.
+ */
+public interface TrendStore {
+	/**
+	 * Replaces the stored top topics of every given window.
+	 * 
+	 * @param top the top topics by window name, most mentioned first
+	 * @param updated the time the topics were counted up to
+	 */
+	void store(Map<String, List<TrendingTopic>> top, long updated) throws PersistenceException;
+}
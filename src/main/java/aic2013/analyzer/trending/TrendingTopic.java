@@ -0,0 +1,27 @@
+package aic2013.analyzer.trending;
+
+/**
+ * A topic and its estimated number of mentions in a window.
+ */
+public class TrendingTopic {
+	private final String name;
+	private final long count;
+
+	public TrendingTopic(String name, long count) {
+		this.name = name;
+		this.count = count;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return name + "=" + count;
+	}
+}
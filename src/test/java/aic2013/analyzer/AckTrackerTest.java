@@ -0,0 +1,64 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.rabbitmq.client.Channel;
+
+public class AckTrackerTest extends TestCase {
+
+	/* the acks and nacks sent on the channel, e.g. "ack 3 multiple" */
+	private final List<String> frames = new ArrayList<>();
+
+	private AckTracker tracker() {
+		Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("basicAck")) {
+							frames.add("ack " + args[0] + ((Boolean) args[1] ? " multiple" : ""));
+						} else if (method.getName().equals("basicNack")) {
+							frames.add("nack " + args[0] + ((Boolean) args[2] ? " requeue" : ""));
+						}
+						return null;
+					}
+				});
+		return new AckTracker(channel);
+	}
+
+	public void testAcksCompletedDeliveriesBelowTheLowestPendingOne() throws IOException {
+		AckTracker tracker = tracker();
+		for (long tag = 1; tag <= 4; tag++) {
+			tracker.delivered(tag);
+		}
+		tracker.complete(Arrays.asList(3L, 4L));
+		assertTrue(frames.isEmpty());
+		tracker.complete(Arrays.asList(1L, 2L));
+		assertEquals(Arrays.asList("ack 4 multiple"), frames);
+		assertEquals(0, tracker.getPendingCount());
+	}
+
+	public void testRequeueingAStuckBatchReleasesLaterAcks() throws IOException {
+		AckTracker tracker = tracker();
+		for (long tag = 1; tag <= 6; tag++) {
+			tracker.delivered(tag);
+		}
+		/* the batch 1-3 failed after tag 2 had been dead-lettered, the batch 4-6 was stored */
+		tracker.complete(Arrays.asList(2L));
+		tracker.complete(Arrays.asList(4L, 5L, 6L));
+		assertTrue(frames.isEmpty());
+
+		for (long tag = 1; tag <= 3; tag++) {
+			tracker.reject(tag, true);
+		}
+		assertEquals(Arrays.asList("nack 1 requeue", "ack 2 multiple", "nack 3 requeue", "ack 6 multiple"), frames);
+		assertEquals(0, tracker.getPendingCount());
+	}
+}
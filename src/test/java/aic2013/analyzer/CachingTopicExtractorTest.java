@@ -0,0 +1,54 @@
+package aic2013.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import aic2013.analyzer.cache.LruCache;
+import aic2013.common.entities.Topic;
+
+public class CachingTopicExtractorTest extends TestCase {
+
+	/**
+	 * Finds the topic "partial" in the first text it extracts, and "partial"
+	 * and "complete" in the texts after that.
+	 */
+	private static class SlowExtractor implements TopicExtractor {
+		private final List<String> extracted = new ArrayList<>();
+
+		@Override
+		public Set<Topic> extract(String input) throws ExtractionException {
+			return extractAll(Collections.singletonList(input)).get(0);
+		}
+
+		@Override
+		public List<Set<Topic>> extractAll(List<String> inputs) {
+			List<Set<Topic>> topics = new ArrayList<>();
+			for (String input : inputs) {
+				Set<Topic> partial = new HashSet<>(Arrays.asList(new Topic(new String[] { "partial" })));
+				if (!extracted.isEmpty()) {
+					partial.add(new Topic(new String[] { "complete" }));
+					topics.add(partial);
+				} else {
+					topics.add(new PartialTopicSet(partial));
+				}
+				extracted.add(input);
+			}
+			return topics;
+		}
+	}
+
+	public void testDoesNotCachePartialTopics() throws ExtractionException {
+		SlowExtractor slow = new SlowExtractor();
+		TopicExtractor extractor = new CachingTopicExtractor(slow, new LruCache<String, Set<Topic>>(10));
+
+		assertEquals(1, extractor.extract("Opera ball in Vienna").size());
+		assertEquals(2, extractor.extract("Opera ball in Vienna").size());
+		assertEquals(2, extractor.extract("Opera ball in Vienna").size());
+		assertEquals(2, slow.extracted.size());
+	}
+}
@@ -0,0 +1,111 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+
+public class DeadLetterPublisherTest extends TestCase {
+
+	/* the confirms of the broker are sent by the test */
+	private volatile ConfirmListener confirms;
+	private volatile long published;
+	private final ExecutorService workers = Executors.newFixedThreadPool(2);
+
+	@Override
+	protected void tearDown() {
+		workers.shutdownNow();
+	}
+
+	private DeadLetterPublisher publisher() throws IOException {
+		final Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+				new Class<?>[] { Channel.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						switch (method.getName()) {
+						case "addConfirmListener":
+							confirms = (ConfirmListener) args[0];
+							return null;
+						case "getNextPublishSeqNo":
+							return published + 1;
+						case "basicPublish":
+							published++;
+							return null;
+						case "isOpen":
+							return true;
+						default:
+							return null;
+						}
+					}
+				});
+		Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return method.getName().equals("createChannel") ? channel : null;
+					}
+				});
+		return new DeadLetterPublisher(connection, "tweet-extraction-dead");
+	}
+
+	private Future<Void> publish(final DeadLetterPublisher publisher) throws InterruptedException {
+		final long before = published;
+		Future<Void> result = workers.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				publisher.publish(new byte[0], "test", 1);
+				return null;
+			}
+		});
+		while (published == before) {
+			Thread.sleep(1);
+		}
+		return result;
+	}
+
+	public void testWaitsForItsOwnConfirmOnly() throws Exception {
+		DeadLetterPublisher publisher = publisher();
+		Future<Void> first = publish(publisher);
+		Future<Void> second = publish(publisher);
+
+		confirms.handleAck(2, false);
+		second.get(1, TimeUnit.SECONDS);
+		try {
+			first.get(50, TimeUnit.MILLISECONDS);
+			fail("returned before its confirm");
+		} catch (TimeoutException e) {
+			/* expected */
+		}
+
+		confirms.handleNack(1, false);
+		try {
+			first.get(1, TimeUnit.SECONDS);
+			fail("returned for a rejected dead letter");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	public void testSettlesMultipleConfirms() throws Exception {
+		DeadLetterPublisher publisher = publisher();
+		Future<Void> first = publish(publisher);
+		Future<Void> second = publish(publisher);
+
+		confirms.handleAck(2, true);
+		first.get(1, TimeUnit.SECONDS);
+		second.get(1, TimeUnit.SECONDS);
+	}
+}
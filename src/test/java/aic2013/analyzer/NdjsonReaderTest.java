@@ -0,0 +1,69 @@
+package aic2013.analyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+public class NdjsonReaderTest extends TestCase {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("tweets", ".json");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	private void write(byte[] content, boolean gzip) throws IOException {
+		try (OutputStream out = gzip ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+			out.write(content);
+		}
+	}
+
+	private List<String> readLines() throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (NdjsonReader reader = new NdjsonReader(file)) {
+			byte[] line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(new String(line, UTF_8));
+			}
+		}
+		return lines;
+	}
+
+	public void testSkipsEmptyLinesAndTerminators() throws IOException {
+		write("{\"a\":1}\n\n{\"b\":2}\r\n\r\n{\"c\":3}".getBytes(UTF_8), false);
+		assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":2}", "{\"c\":3}"), readLines());
+	}
+
+	public void testReadsGzippedFiles() throws IOException {
+		write("{\"a\":1}\n{\"b\":2}\n".getBytes(UTF_8), true);
+		assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":2}"), readLines());
+	}
+
+	public void testReadsLinesAcrossBufferBoundaries() throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; content.size() < 9 << 20; i++) {
+			String line = "{\"id\":" + i + ",\"text\":\"" + new String(new char[i % 1000]).replace('\0', 'x') + "\"}";
+			expected.add(line);
+			content.write((line + "\n").getBytes(UTF_8));
+		}
+		write(content.toByteArray(), false);
+		assertEquals(expected, readLines());
+	}
+}
@@ -0,0 +1,32 @@
+package aic2013.analyzer;
+
+import junit.framework.TestCase;
+
+public class PrefetchControllerTest extends TestCase {
+
+	/* batches of 100 tweets, 4 workers, 2 channels, at most 2000 per channel */
+	private final PrefetchController controller = new PrefetchController(100, 4, 2, 2000, 1000);
+
+	public void testInitialPrefetchCoversWorkersAndFillingBatches() {
+		assertEquals(300, controller.initialPrefetch());
+	}
+
+	public void testCoversTweetsWaitingForTheWriteStage() {
+		/* 4 workers extract 400 tweets per 100 ms, and wait 100 ms for writes */
+		assertEquals(500, controller.nextPrefetch(300, 100, 100, 0, 0));
+	}
+
+	public void testStepsAtMostByAFactorOfTwo() {
+		assertEquals(600, controller.nextPrefetch(300, 100, 1000, 0, 0));
+		assertEquals(150, controller.nextPrefetch(300, 100, 0, 4, 0));
+	}
+
+	public void testStaysWithinBounds() {
+		assertEquals(2000, controller.nextPrefetch(1500, 1, 1000, 0, 0));
+		assertEquals(100, controller.nextPrefetch(150, 100, 0, 100, 0));
+	}
+
+	public void testDropsToOneBatchWhenWritesAreSaturated() {
+		assertEquals(100, controller.nextPrefetch(2000, 100, 100, 0, 1001));
+	}
+}
@@ -0,0 +1,42 @@
+package aic2013.analyzer;
+
+import junit.framework.TestCase;
+
+public class ShardRouterTest extends TestCase {
+
+	public void testNamesShardQueues() {
+		assertEquals("tweet-extraction", new ShardRouter("tweet-extraction", "shards", 1).queueName(0));
+		ShardRouter shards = new ShardRouter("tweet-extraction", "shards", 4);
+		assertEquals("tweet-extraction.3", shards.queueName(3));
+		try {
+			shards.queueName(4);
+			fail("shard 4 of 4");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testSpreadsUsersEvenly() {
+		int[] users = new int[8];
+		for (long userId = 0; userId < 80000; userId++) {
+			users[new ShardRouter("q", "x", 8).shardOf(userId * 7919)]++;
+		}
+		for (int count : users) {
+			assertTrue(String.valueOf(count), count > 9000 && count < 11000);
+		}
+	}
+
+	public void testOnlyMovesUsersToANewShard() {
+		ShardRouter before = new ShardRouter("q", "x", 9);
+		ShardRouter after = new ShardRouter("q", "x", 10);
+		int moved = 0;
+		for (long userId = 0; userId < 100000; userId++) {
+			int shard = after.shardOf(userId);
+			if (shard != before.shardOf(userId)) {
+				assertEquals(9, shard);
+				moved++;
+			}
+		}
+		assertTrue(String.valueOf(moved), moved > 9000 && moved < 11000);
+	}
+}
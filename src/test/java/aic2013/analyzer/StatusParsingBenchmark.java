@@ -0,0 +1,63 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import twitter4j.TwitterException;
+import twitter4j.json.DataObjectFactory;
+
+/**
+ * Measures parsing the tweet corpus into twitter4j statuses, and reading
+ * only the fields the analyzer needs with {@link TweetParser}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusParsingBenchmark {
+
+	private List<String> tweets;
+	private List<byte[]> bodies;
+	private TweetParser tweetParser;
+
+	@Setup
+	public void setUp() {
+		tweets = TweetCorpus.json();
+		bodies = new ArrayList<>(tweets.size());
+		for (String tweet : tweets) {
+			bodies.add(tweet.getBytes(Charset.forName("UTF-8")));
+		}
+		tweetParser = new TweetParser();
+	}
+
+	@Benchmark
+	public void createStatus(Blackhole blackhole) throws TwitterException {
+		for (String tweet : tweets) {
+			blackhole.consume(DataObjectFactory.createStatus(tweet));
+		}
+	}
+
+	@Benchmark
+	public void parseTweet(Blackhole blackhole) throws IOException {
+		for (byte[] body : bodies) {
+			blackhole.consume(tweetParser.parse(body));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package aic2013.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import aic2013.analyzer.filter.TextFilter;
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.stage.ExtractionContext;
+import aic2013.analyzer.stage.FeatureEncoder;
+import aic2013.analyzer.stage.LdaStage;
+import cc.mallet.pipe.Pipe;
+import cc.mallet.types.Alphabet;
+import cc.mallet.types.Instance;
+import edu.stanford.nlp.ie.AbstractSequenceClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Measures the extraction of the tweet corpus end to end and its Mallet and
+ * CRF stages on their own, and the vectorization of the tweets by the Mallet
+ * pipe and by the {@link FeatureEncoder} that replaces it. Needs the classifier in
+ * {@link TopicExtractorImpl#CLASSIFIER_PATH} relative to the working
+ * directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TopicExtractorBenchmark {
+
+	private AbstractSequenceClassifier<CoreLabel> classifier;
+	private TopicExtractorImpl extractor;
+	private LdaStage ldaStage;
+	private Pipe malletPipe;
+	private FeatureEncoder encoder;
+	private List<String> texts;
+	private List<String> filteredTexts;
+
+	@Setup
+	public void setUp() {
+		classifier = TopicExtractorImpl.loadClassifier();
+		extractor = new TopicExtractorImpl(classifier);
+		ldaStage = new LdaStage(null, new PipelineMetrics(), LdaStage.MAX_ALPHABET_SIZE);
+		malletPipe = LdaStage.createMalletPipe(false, false, true, true, null);
+		encoder = new FeatureEncoder(new Alphabet(), true, LdaStage.MAX_ALPHABET_SIZE);
+		texts = TweetCorpus.texts();
+
+		TextFilter filter = TopicExtractorImpl.createFilter();
+		filteredTexts = new ArrayList<>(texts.size());
+		for (String text : texts) {
+			filteredTexts.add(filter.filter(text));
+		}
+	}
+
+	@Benchmark
+	public void extract(Blackhole blackhole) throws ExtractionException {
+		for (String text : texts) {
+			blackhole.consume(extractor.extract(text));
+		}
+	}
+
+	@Benchmark
+	public void malletStage(Blackhole blackhole) throws ExtractionException {
+		for (String filteredText : filteredTexts) {
+			blackhole.consume(ldaStage.extract(
+					Collections.singletonList(new ExtractionContext(filteredText, filteredText)), Long.MAX_VALUE));
+		}
+	}
+
+	@Benchmark
+	public void malletPipe(Blackhole blackhole) {
+		for (String filteredText : filteredTexts) {
+			blackhole.consume(malletPipe.instanceFrom(new Instance(filteredText, null, null, null)));
+		}
+	}
+
+	@Benchmark
+	public void featureEncoder(Blackhole blackhole) {
+		for (String filteredText : filteredTexts) {
+			blackhole.consume(encoder.instance(filteredText));
+		}
+	}
+
+	@Benchmark
+	public void crfStage(Blackhole blackhole) {
+		for (String filteredText : filteredTexts) {
+			blackhole.consume(classifier.classify(filteredText));
+		}
+	}
+}
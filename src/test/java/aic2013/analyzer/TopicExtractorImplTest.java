@@ -0,0 +1,36 @@
+package aic2013.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.analyzer.stage.LdaStage;
+import aic2013.analyzer.stage.StagePlan;
+import aic2013.common.entities.Topic;
+
+public class TopicExtractorImplTest extends TestCase {
+
+	private static List<String> names(Set<Topic> topics) {
+		List<String> names = new ArrayList<>();
+		for (Topic topic : topics) {
+			names.add(topic.getName()[0]);
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	public void testKeepsTheHashtagsOfTweetsThatAreNotExtractedOtherwise() throws ExtractionException {
+		TopicExtractor extractor = new TopicExtractorImpl(new StagePlan("hashtags", 0, null, null, false, null,
+				new PipelineMetrics(), LdaStage.MAX_ALPHABET_SIZE), new ExtractionTracer(0), null);
+
+		List<Set<Topic>> topics = extractor.extractAll(Arrays.asList("#Obama #Berlin",
+				"RT @x: #tag http://t.co/x", "Heute regnet es wieder in ganz #Wien und niemand ist gl\u00fccklich"));
+		assertEquals(Arrays.asList("Berlin", "Obama"), names(topics.get(0)));
+		assertEquals(Arrays.asList("tag"), names(topics.get(1)));
+		assertEquals(Arrays.asList("Wien"), names(topics.get(2)));
+	}
+}
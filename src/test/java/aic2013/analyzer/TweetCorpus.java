@@ -0,0 +1,54 @@
+package aic2013.analyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import twitter4j.TwitterException;
+import twitter4j.json.DataObjectFactory;
+
+/**
+ * The fixed corpus of sample tweets in {@code tweets.json} that tests and
+ * benchmarks run on, one raw tweet JSON per line.
+ */
+public final class TweetCorpus {
+	private static final String RESOURCE = "/tweets.json";
+
+	private TweetCorpus() {
+	}
+
+	public static List<String> json() {
+		List<String> tweets = new ArrayList<>();
+		try (InputStream in = TweetCorpus.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) {
+				throw new IllegalStateException(RESOURCE + " is missing from the test resources");
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					tweets.add(line);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return tweets;
+	}
+
+	public static List<String> texts() {
+		List<String> texts = new ArrayList<>();
+		try {
+			for (String json : json()) {
+				texts.add(DataObjectFactory.createStatus(json).getText());
+			}
+		} catch (TwitterException e) {
+			throw new IllegalStateException(e);
+		}
+		return texts;
+	}
+}
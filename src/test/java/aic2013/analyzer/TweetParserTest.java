@@ -0,0 +1,69 @@
+package aic2013.analyzer;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+public class TweetParserTest extends TestCase {
+
+	private static final String USER = "{\"id\":8919,\"name\":\"Jack\",\"entities\":{\"url\":{\"urls\":[{\"id\":1}]}},\"profile\":null}";
+
+	private final TweetParser parser = new TweetParser();
+
+	private Tweet parse(String json) throws IOException {
+		return parser.parse(json.getBytes(Charset.forName("UTF-8")));
+	}
+
+	public void testReadsFieldsAndSkipsTheRest() throws IOException {
+		Tweet tweet = parse("{\"created_at\":\"Thu Nov 21 00:00:00 +0000 2013\",\"id\":400000000000339564,"
+				+ "\"text\":\"Obama in #Berlin \\\"today\\\"\",\"user\":" + USER + ","
+				+ "\"coordinates\":{\"coordinates\":[16.3,48.2]},\"place\":null,"
+				+ "\"entities\":{\"urls\":[{\"url\":\"http://t.co/x\",\"indices\":[0,1]}],"
+				+ "\"hashtags\":[{\"indices\":[9,16],\"text\":\"Berlin\"},{\"text\":\"Obama\"}],\"user_mentions\":[]},"
+				+ "\"retweeted\":false}");
+
+		assertEquals(400000000000339564L, tweet.getId());
+		assertEquals("Obama in #Berlin \"today\"", tweet.getText());
+		assertFalse(tweet.isRetweet());
+		assertEquals(8919, tweet.getUserId());
+		assertEquals("Jack", tweet.getUser().getName());
+		assertNull(tweet.getUser().getScreenName());
+		/* the time in the id wins over created_at */
+		assertEquals(1384202406297L, tweet.getCreatedAt().getTime());
+	}
+
+	public void testReadsTheCreationTimeOfTweetsOlderThanTimestampedIds() throws IOException {
+		Tweet tweet = parse("{\"created_at\":\"Sun Mar 21 20:50:14 +0000 2006\",\"id\":20,\"text\":\"just setting up my twttr\","
+				+ "\"user\":" + USER + "}");
+		assertEquals(1142974214000L, tweet.getCreatedAt().getTime());
+		assertNull(parse("{\"id\":20,\"text\":\"no date\",\"user\":" + USER + "}").getCreatedAt());
+	}
+
+	public void testRetweetKeepsTheFieldsOfTheRetweet() throws IOException {
+		Tweet tweet = parse("{\"retweeted_status\":{\"id\":1,\"text\":\"original\",\"user\":{\"id\":2},"
+				+ "\"entities\":{\"hashtags\":[{\"text\":\"original\"}]}},"
+				+ "\"id\":3,\"text\":\"RT @a: original\",\"user\":" + USER + ",\"entities\":{\"hashtags\":[]}}");
+
+		assertEquals(3, tweet.getId());
+		assertEquals("RT @a: original", tweet.getText());
+		assertTrue(tweet.isRetweet());
+		assertEquals(8919, tweet.getUserId());
+	}
+
+	public void testDecodesUtf8() throws IOException {
+		assertEquals("Gr\u00fc\u00dfe aus Wien \u2603", parse("{\"text\":\"Gr\u00fc\u00dfe aus Wien \\u2603\",\"user\":" + USER + "}").getText());
+	}
+
+	public void testRejectsMessagesThatAreNoTweets() {
+		for (String json : new String[]{ "{\"delete\":{\"status\":{\"id\":1,\"user_id\":2}}}", "[]", "{\"text\":null,\"user\":" + USER + "}",
+				"{\"text\":\"truncated" }) {
+			try {
+				parse(json);
+				fail("parsed " + json);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package aic2013.analyzer.filter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CompiledTextFilterTest extends TestCase {
+
+	private static final String[] TWEETS = {
+		"RT @user: Obama visits #Berlin http://t.co/abc",
+		"rt this is not a retweet",
+		"  RT  @a @b   #tag   text  ",
+		"Hello  world #end",
+		"Hello  world  @end",
+		"#only #tags",
+		"",
+		"   ",
+		"RT",
+		"RTRT hello",
+		"http://t.co/x",
+		"Joe Miller meets\tLondon\nhttps://t.co/y",
+	};
+
+	private static TextFilter chain() {
+		return new PrefixFilter("#", new PrefixFilter("@", new PrefixFilter(
+				"http", new GlobalPrefixFilter("RT", false, new BaseFilter()))));
+	}
+
+	private static void assertSameOutput(TextFilter expected, TextFilter actual, String input) {
+		assertEquals("input \"" + input + "\"", expected.filter(input), actual.filter(input));
+	}
+
+	public void testMatchesDecoratorChainOnTweets() {
+		TextFilter chain = chain();
+		TextFilter compiled = CompiledTextFilter.compile(chain);
+		for (String tweet : TWEETS) {
+			assertSameOutput(chain, compiled, tweet);
+		}
+	}
+
+	public void testMatchesDecoratorChainOnRandomInput() {
+		TextFilter[] chains = {
+			chain(),
+			new PrefixFilter("#", new BaseFilter()),
+			new PrefixFilter("#", new PrefixFilter("@", new BaseFilter())),
+			new GlobalPrefixFilter("RT", true, new GlobalPrefixFilter("@", false, new BaseFilter())),
+			new PrefixFilter("", new PrefixFilter("#", new BaseFilter())),
+			new PrefixFilter("#", new PrefixFilter("", new BaseFilter())),
+		};
+		char[] alphabet = { ' ', ' ', ' ', 'a', 'b', '#', '@', 'h', 't', 'p', 'R', 'T', 'r', '\t' };
+		Random random = new Random(42);
+		for (TextFilter chain : chains) {
+			TextFilter compiled = CompiledTextFilter.compile(chain);
+			for (int i = 0; i < 20000; i++) {
+				char[] input = new char[random.nextInt(16)];
+				for (int j = 0; j < input.length; j++) {
+					input[j] = alphabet[random.nextInt(alphabet.length)];
+				}
+				assertSameOutput(chain, compiled, new String(input));
+			}
+		}
+	}
+
+	public void testRejectsPrefixFilterInsideGlobalPrefixFilter() {
+		try {
+			CompiledTextFilter.compile(new GlobalPrefixFilter("RT", false, new PrefixFilter("#", new BaseFilter())));
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package aic2013.analyzer.filter;
+
+import aic2013.analyzer.filter.EnglishDetector.Verdict;
+import junit.framework.TestCase;
+
+public class EnglishDetectorTest extends TestCase {
+
+	private final EnglishDetector detector = new EnglishDetector();
+
+	private Verdict detect(String tweet) {
+		return detector.detect(TextNormalizer.normalize(tweet));
+	}
+
+	public void testNormalizeKeepsAsciiTweets() {
+		String tweet = "RT @user: Obama visits #Berlin http://t.co/abc";
+		assertSame(tweet, TextNormalizer.normalize(tweet));
+	}
+
+	public void testNormalizeStripsAccentsAndEmoji() {
+		assertEquals("Cafe in Zurich serves the best creme brulee ",
+				TextNormalizer.normalize("Caf\u00e9 in Z\u00fcrich serves the best cr\u00e8me br\u00fbl\u00e9e \u2615"));
+		assertEquals("So happy right now  #friday",
+				TextNormalizer.normalize("So happy right now \ud83d\ude00\ud83c\udf89 #friday"));
+		assertEquals("thumbs up ", TextNormalizer.normalize("thumbs\u00a0up \ud83d\udc4d\ud83c\udffd"));
+	}
+
+	public void testEnglish() {
+		assertEquals(Verdict.ENGLISH, detect("Caf\u00e9 in Z\u00fcrich serves the best cr\u00e8me br\u00fbl\u00e9e \u2615"));
+		assertEquals(Verdict.ENGLISH, detect("Microsoft and Google compete for cloud customers in Europe"));
+		assertEquals(Verdict.ENGLISH, detect("Apple Samsung Nokia"));
+	}
+
+	public void testSkipped() {
+		assertEquals(Verdict.EMPTY, detect("\ud83d\ude00\ud83c\udf89 "));
+		assertEquals(Verdict.EMPTY, detect(""));
+		assertEquals(Verdict.FOREIGN_SCRIPT, detect("\u041f\u0440\u0438\u0432\u0435\u0442 \u043c\u0438\u0440"));
+		assertEquals(Verdict.OTHER_LANGUAGE, detect("Ich bin heute nicht in der Stadt"));
+		assertEquals(Verdict.OTHER_LANGUAGE, detect("Er hat im Urlaub viel gelesen, es war toll"));
+		assertEquals(Verdict.OTHER_LANGUAGE, detect("Hoy es un d\u00eda muy bonito para la playa"));
+		assertEquals(Verdict.OTHER_LANGUAGE, detect("Je ne suis pas tr\u00e8s content de la m\u00e9t\u00e9o"));
+	}
+}
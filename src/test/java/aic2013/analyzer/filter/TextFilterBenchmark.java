@@ -0,0 +1,57 @@
+package aic2013.analyzer.filter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import aic2013.analyzer.TweetCorpus;
+
+/**
+ * Compares the decorator chain built by TopicExtractorImpl with its compiled
+ * single-pass equivalent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFilterBenchmark {
+
+	private TextFilter decoratorChain;
+	private TextFilter compiledFilter;
+	private List<String> tweets;
+
+	@Setup
+	public void setUp() {
+		decoratorChain = new PrefixFilter("#", new PrefixFilter("@", new PrefixFilter(
+				"http", new GlobalPrefixFilter("RT", false, new BaseFilter()))));
+		compiledFilter = CompiledTextFilter.compile(decoratorChain);
+		tweets = TweetCorpus.texts();
+	}
+
+	@Benchmark
+	public void decoratorChain(Blackhole blackhole) {
+		for (String tweet : tweets) {
+			blackhole.consume(decoratorChain.filter(tweet));
+		}
+	}
+
+	@Benchmark
+	public void compiledFilter(Blackhole blackhole) {
+		for (String tweet : tweets) {
+			blackhole.consume(compiledFilter.filter(tweet));
+		}
+	}
+}
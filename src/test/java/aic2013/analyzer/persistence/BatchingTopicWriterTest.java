@@ -0,0 +1,125 @@
+package aic2013.analyzer.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import aic2013.common.entities.Topic;
+
+public class BatchingTopicWriterTest extends TestCase {
+
+	/**
+	 * Stand-in for the graph that records every batch it is asked to store.
+	 */
+	private static class InMemoryTopicStore implements TopicStore {
+		private final List<Integer> topicBatches = new ArrayList<>();
+		private final List<Integer> relationBatches = new ArrayList<>();
+		private boolean failing;
+
+		@Override
+		public synchronized void store(Collection<Topic> topics, Collection<TopicRelation> relations) throws PersistenceException {
+			if (failing) {
+				throw new PersistenceException("unavailable");
+			}
+			topicBatches.add(topics.size());
+			relationBatches.add(relations.size());
+		}
+	}
+
+	private static class LatchCallback implements BatchingTopicWriter.Callback {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile boolean written;
+
+		@Override
+		public void written() {
+			written = true;
+			latch.countDown();
+		}
+
+		@Override
+		public void failed(PersistenceException e) {
+			latch.countDown();
+		}
+
+		private boolean await() throws InterruptedException {
+			return latch.await(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private static TopicRelation relation(String type, long userId, String topic) {
+		return new TopicRelation(type, userId, null, new Topic(new String[] { topic }));
+	}
+
+	public void testDuplicatesAreStoredOnceInOneBatch() throws Exception {
+		InMemoryTopicStore store = new InMemoryTopicStore();
+		BatchingTopicWriter writer = new BatchingTopicWriter(store, 3, 60000, 10, 10);
+
+		LatchCallback first = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 1, "java"), relation("TWEETS", 1, "java")), first);
+		assertEquals(1, writer.getPendingCount());
+
+		LatchCallback second = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 2, "java"), relation("RETWEETS", 1, "java")), second);
+
+		assertTrue(first.await());
+		assertTrue(second.await());
+		assertTrue(first.written);
+		assertTrue(second.written);
+		assertEquals(Arrays.asList(1), store.topicBatches);
+		assertEquals(Arrays.asList(3), store.relationBatches);
+		writer.close();
+	}
+
+	public void testCloseFlushesPartialBatch() throws Exception {
+		InMemoryTopicStore store = new InMemoryTopicStore();
+		BatchingTopicWriter writer = new BatchingTopicWriter(store, 100, 60000, 10, 10);
+
+		LatchCallback callback = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 1, "java"), relation("TWEETS", 1, "neo4j")), callback);
+		writer.close();
+
+		assertTrue(callback.await());
+		assertTrue(callback.written);
+		assertEquals(Arrays.asList(2), store.relationBatches);
+	}
+
+	public void testKnownRelationsAreNotStoredAgain() throws Exception {
+		InMemoryTopicStore store = new InMemoryTopicStore();
+		BatchingTopicWriter writer = new BatchingTopicWriter(store, 1, 60000, 10, 10);
+
+		LatchCallback first = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 1, "java")), first);
+		assertTrue(first.await());
+
+		LatchCallback second = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 1, "java")), second);
+		assertTrue(second.written);
+		assertEquals(0, writer.getPendingCount());
+
+		LatchCallback third = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 2, "java")), third);
+		assertTrue(third.await());
+		writer.close();
+
+		assertEquals(Arrays.asList(1, 0), store.topicBatches);
+		assertEquals(Arrays.asList(1, 1), store.relationBatches);
+		assertEquals(1, writer.getKnownRelations().getHits());
+	}
+
+	public void testFailedBatchNotifiesCallbacks() throws Exception {
+		InMemoryTopicStore store = new InMemoryTopicStore();
+		store.failing = true;
+		BatchingTopicWriter writer = new BatchingTopicWriter(store, 1, 60000, 10, 10);
+
+		LatchCallback callback = new LatchCallback();
+		writer.write(Arrays.asList(relation("TWEETS", 1, "java")), callback);
+
+		assertTrue(callback.await());
+		assertFalse(callback.written);
+		writer.close();
+	}
+}
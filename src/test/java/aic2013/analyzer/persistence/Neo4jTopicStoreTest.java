@@ -0,0 +1,173 @@
+package aic2013.analyzer.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import aic2013.common.entities.Topic;
+
+public class Neo4jTopicStoreTest extends TestCase {
+
+	private static final String MERGE_TOPICS = "UNWIND {1} AS name MERGE (:Topic {name: name})";
+	private static final String MERGE_RELATIONS = "UNWIND {1} AS r MATCH (t:Topic {name: r.topic}) "
+			+ "MERGE (u:User {id: r.user}) "
+			+ "SET u.screenName = coalesce(r.screenName, u.screenName), u.name = coalesce(r.name, u.name), "
+			+ "u.location = coalesce(r.location, u.location), u.lang = coalesce(r.lang, u.lang) "
+			+ "MERGE (u)-[:%s]->(t)";
+
+	/**
+	 * Stand-in for the graph behind a JDBC connection, which applies the
+	 * UNWIND rows of the statements of a transaction on commit. It only
+	 * knows the statements above, which it applies like Neo4j would.
+	 */
+	private static class InMemoryGraph implements InvocationHandler {
+		private final Set<String> topics = new HashSet<>();
+		private final Map<Object, Map<String, Object>> users = new HashMap<>();
+		private final Set<String> relations = new HashSet<>();
+		private final List<String> statements = new ArrayList<>();
+		private final List<Object[]> uncommitted = new ArrayList<>();
+		private boolean failing;
+
+		private Connection connection() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+			switch (method.getName()) {
+			case "prepareStatement":
+				return statement((String) args[0]);
+			case "commit":
+				for (Object[] statement : uncommitted) {
+					apply((String) statement[0], (List<?>) statement[1]);
+				}
+				uncommitted.clear();
+				return null;
+			case "rollback":
+				uncommitted.clear();
+				return null;
+			default:
+				return null;
+			}
+		}
+
+		private PreparedStatement statement(final String statement) {
+			final Object[] parameters = new Object[1];
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+							if (method.getName().equals("setObject")) {
+								parameters[0] = args[1];
+							} else if (method.getName().equals("executeUpdate")) {
+								if (failing) {
+									throw new SQLException("unavailable");
+								}
+								statements.add(statement);
+								uncommitted.add(new Object[] { statement, parameters[0] });
+								return 0;
+							}
+							return null;
+						}
+					});
+		}
+
+		private void apply(String statement, List<?> rows) {
+			for (Object row : rows) {
+				if (statement.equals(MERGE_TOPICS)) {
+					topics.add((String) row);
+					continue;
+				}
+				String type = statement.substring(statement.indexOf("[:") + 2, statement.indexOf("]->"));
+				assertEquals(String.format(MERGE_RELATIONS, type), statement);
+				Map<?, ?> relation = (Map<?, ?>) row;
+				assertTrue("unknown topic " + relation.get("topic"), topics.contains(relation.get("topic")));
+				Map<String, Object> user = users.get(relation.get("user"));
+				if (user == null) {
+					user = new HashMap<>();
+					users.put(relation.get("user"), user);
+				}
+				for (String field : Arrays.asList("screenName", "name", "location", "lang")) {
+					if (relation.get(field) != null) {
+						user.put(field, relation.get(field));
+					}
+				}
+				relations.add(relation.get("user") + " " + type + " " + relation.get("topic"));
+			}
+		}
+	}
+
+	private static TopicRelation relation(String type, long userId, Topic topic) {
+		return new TopicRelation(type, userId, null, topic);
+	}
+
+	public void testStoresABatchWithOneStatementPerKind() throws Exception {
+		InMemoryGraph graph = new InMemoryGraph();
+		Neo4jTopicStore store = new Neo4jTopicStore(graph.connection());
+		Topic vienna = new Topic(new String[] { "Vienna" });
+		Topic lda = new Topic(new String[] { "opera", "ball" });
+		store.store(Arrays.asList(vienna, lda), Arrays.asList(relation("TWEETS", 1, vienna), relation("TWEETS", 2, lda),
+				relation("RETWEETS", 3, vienna)));
+
+		assertEquals(3, graph.statements.size());
+		assertEquals(new HashSet<>(Arrays.asList("Vienna", "opera ball")), graph.topics);
+		assertEquals(new HashSet<>(Arrays.asList("1 TWEETS Vienna", "2 TWEETS opera ball", "3 RETWEETS Vienna")),
+				graph.relations);
+	}
+
+	public void testStoresTheProfilesOfTheUsers() throws Exception {
+		InMemoryGraph graph = new InMemoryGraph();
+		Neo4jTopicStore store = new Neo4jTopicStore(graph.connection());
+		Topic vienna = new Topic(new String[] { "Vienna" });
+		store.store(Arrays.asList(vienna), Arrays.asList(new TopicRelation("TWEETS", 1, new UserProfile(1, "jack",
+				"Jack", "Vienna", "en"), vienna)));
+		store.store(Arrays.asList(vienna), Arrays.asList(new TopicRelation("RETWEETS", 1, new UserProfile(1, "jack",
+				"Jack", null, null), vienna)));
+
+		Map<String, Object> jack = new HashMap<>();
+		jack.put("screenName", "jack");
+		jack.put("name", "Jack");
+		jack.put("location", "Vienna");
+		jack.put("lang", "en");
+		assertEquals(jack, graph.users.get(1L));
+	}
+
+	public void testRollsBackAFailedBatch() throws Exception {
+		InMemoryGraph graph = new InMemoryGraph();
+		Neo4jTopicStore store = new Neo4jTopicStore(graph.connection());
+		graph.failing = true;
+		Topic vienna = new Topic(new String[] { "Vienna" });
+		try {
+			store.store(Arrays.asList(vienna), Arrays.asList(relation("TWEETS", 1, vienna)));
+			fail("stored while the graph is unavailable");
+		} catch (PersistenceException e) {
+			/* expected */
+		}
+		graph.failing = false;
+		store.store(Arrays.asList(vienna), Arrays.asList(relation("TWEETS", 1, vienna)));
+		assertEquals(new HashSet<>(Arrays.asList("1 TWEETS Vienna")), graph.relations);
+	}
+
+	public void testRejectsRelationTypesThatAreNoIdentifiers() throws Exception {
+		Neo4jTopicStore store = new Neo4jTopicStore(new InMemoryGraph().connection());
+		try {
+			store.store(new ArrayList<Topic>(), Arrays.asList(relation("TWEETS]->(x) DETACH DELETE x //", 1,
+					new Topic(new String[] { "Vienna" }))));
+			fail("stored an injected relation type");
+		} catch (PersistenceException e) {
+			/* expected */
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import aic2013.analyzer.TweetCorpus;
+import cc.mallet.pipe.Pipe;
+import cc.mallet.types.Alphabet;
+import cc.mallet.types.FeatureSequence;
+import cc.mallet.types.Instance;
+
+public class FeatureEncoderTest extends TestCase {
+
+	private static List<Object> words(FeatureSequence features) {
+		List<Object> words = new ArrayList<>();
+		for (int i = 0; i < features.getLength(); i++) {
+			words.add(features.getAlphabet().lookupObject(features.getIndexAtPosition(i)));
+		}
+		return words;
+	}
+
+	public void testEncodesTheWordsOfTheMalletPipe() {
+		Pipe pipe = LdaStage.createMalletPipe(false, false, true, true, null);
+		/* a small table, so that it is cleared while encoding the corpus */
+		FeatureEncoder encoder = new FeatureEncoder(new Alphabet(), true, 100);
+		for (String text : TweetCorpus.texts()) {
+			Instance piped = pipe.instanceFrom(new Instance(text, null, null, null));
+			assertEquals(text, words((FeatureSequence) piped.getData()), words(encoder.encode(text)));
+		}
+	}
+
+	public void testSkipsWordsNotInAFixedAlphabet() {
+		Alphabet alphabet = new Alphabet();
+		alphabet.lookupIndex("vienna");
+		alphabet.stopGrowth();
+		FeatureEncoder encoder = new FeatureEncoder(alphabet, false, 100);
+		List<Object> expected = new ArrayList<>();
+		expected.add("vienna");
+		expected.add("vienna");
+		assertEquals(expected, words(encoder.encode("The weather in VIENNA, Vienna2013!")));
+		assertEquals(1, alphabet.size());
+	}
+}
@@ -0,0 +1,74 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class GazetteerTest extends TestCase {
+
+	private static final Gazetteer GAZETTEER = new Gazetteer(Arrays.asList("Vienna", "New York", "New  York City",
+			"York", "Apple", "he", "Joe Miller", "", "apple"));
+
+	public void testFindsWholeWordsCaseInsensitively() {
+		assertEquals(Arrays.asList("Apple", "Vienna"), GAZETTEER.find("APPLE opens a store in vienna, says Applebee"));
+		assertEquals(Collections.<String> emptyList(), GAZETTEER.find("the shelf"));
+		assertEquals(Arrays.asList("Joe Miller", "he"), GAZETTEER.find("Joe\tMiller said he would"));
+		assertEquals(7, GAZETTEER.size());
+	}
+
+	public void testFindsAccentedNamesInFoldedText() {
+		Gazetteer gazetteer = new Gazetteer(Arrays.asList("Z\u00fcrich", "Nestl\u00e9", "S\u00e3o Paulo"));
+		assertEquals(Arrays.asList("Nestl\u00e9", "Z\u00fcrich", "S\u00e3o Paulo"),
+				gazetteer.find("Nestle opens a plant near Zurich, not in Sao Paulo"));
+	}
+
+	public void testPrefersLeftmostLongestMatch() {
+		assertEquals(Arrays.asList("New York City"), GAZETTEER.find("new york city"));
+		assertEquals(Arrays.asList("New York", "York"), GAZETTEER.find("New York or York"));
+	}
+
+	public void testMatchesNaiveSearch() {
+		Random random = new Random(7);
+		String[] words = { "a", "ab", "b", "ba", "abc", "c" };
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			names.add(words[random.nextInt(words.length)] + (random.nextBoolean() ? "" : " " + words[random.nextInt(words.length)]));
+		}
+		Gazetteer gazetteer = new Gazetteer(names);
+		for (int i = 0; i < 200; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(8); j > 0; j--) {
+				text.append(words[random.nextInt(words.length)]).append(' ');
+			}
+			assertEquals(text.toString(), naiveFind(names, text.toString()), gazetteer.find(text.toString()));
+		}
+	}
+
+	private static List<String> naiveFind(List<String> names, String text) {
+		List<String> found = new ArrayList<>();
+		int i = 0;
+		while (i < text.length()) {
+			String longest = null;
+			if (i == 0 || text.charAt(i - 1) == ' ') {
+				for (String name : names) {
+					int end = i + name.length();
+					if (text.startsWith(name, i) && (end == text.length() || text.charAt(end) == ' ')
+							&& (longest == null || name.length() > longest.length())) {
+						longest = name;
+					}
+				}
+			}
+			if (longest != null) {
+				found.add(longest);
+				i += longest.length();
+			} else {
+				i++;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,56 @@
+package aic2013.analyzer.stage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import aic2013.analyzer.metrics.PipelineMetrics;
+import aic2013.common.entities.Topic;
+
+public class StagePlanTest extends TestCase {
+
+	private static StagePlan plan(String stages) {
+		return new StagePlan(stages, 0, null, null, false, null, new PipelineMetrics(), LdaStage.MAX_ALPHABET_SIZE);
+	}
+
+	private static List<String> tags(String input) {
+		List<String> tags = new ArrayList<>();
+		for (Topic topic : HashtagStage.extract(input)) {
+			tags.add(topic.getName()[0]);
+		}
+		Collections.sort(tags);
+		return tags;
+	}
+
+	public void testParsesStagesAndBudgets() {
+		StagePlan plan = plan(" hashtags, ner:5 ,lda:20");
+		assertEquals("hashtags,ner:5,lda:20", plan.toString());
+		assertEquals(0, plan.getBudgetNanos(0));
+		assertEquals(5000000, plan.getBudgetNanos(1));
+		assertTrue(plan.requiresClassifier());
+		assertFalse(plan("hashtags,lda").requiresClassifier());
+		assertFalse(StagePlan.requiresClassifier("hashtags,lda:20", true));
+		assertTrue(StagePlan.requiresClassifier("ner:5", false));
+		assertFalse(StagePlan.requiresClassifier("hashtags,gazetteer:1", false));
+		assertTrue(StagePlan.requiresClassifier("hashtags,gazetteer:1", true));
+	}
+
+	public void testRejectsUnknownAndDuplicateStages() {
+		for (String stages : Arrays.asList("hashtags,keywords", "ner,ner:5", "lda:-1", "gazetteer")) {
+			try {
+				plan(stages);
+				fail(stages);
+			} catch (IllegalArgumentException e) {
+				/* expected */
+			}
+		}
+	}
+
+	public void testExtractsHashtags() {
+		assertEquals(Arrays.asList("aic", "vienna_2013"), tags("#aic at #vienna_2013, #aic again"));
+		assertEquals(Collections.<String> emptyList(), tags("no#tag, # and ##"));
+		assertEquals(Arrays.asList("b"), tags("(#b)"));
+	}
+}
@@ -0,0 +1,61 @@
+package aic2013.analyzer.trending;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SlidingWindowCounterTest extends TestCase {
+
+	private static SlidingWindowCounter window() {
+		/* 10 buckets of 1000 ms */
+		return new SlidingWindowCounter("10s", 10000, 10, 1024, 4, 20);
+	}
+
+	private static List<String> names(List<TrendingTopic> topics) {
+		List<String> names = new ArrayList<>();
+		for (TrendingTopic topic : topics) {
+			names.add(topic.getName());
+		}
+		return names;
+	}
+
+	public void testFindsHeavyHittersAmongNoise() {
+		SlidingWindowCounter window = window();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			long now = i / 2;
+			if (i % 10 == 0) {
+				window.add(Arrays.asList("Obama"), now);
+			} else if (i % 20 == 1) {
+				window.add(Arrays.asList("#Berlin"), now);
+			} else {
+				window.add(Arrays.asList("noise" + random.nextInt(50000)), now);
+			}
+		}
+
+		List<TrendingTopic> top = window.top(2, 9999);
+		assertEquals(Arrays.asList("Obama", "#Berlin"), names(top));
+		assertTrue(top.get(0).getCount() >= 2000);
+		assertTrue(top.get(0).getCount() < 2100);
+		assertTrue(top.get(1).getCount() >= 1000);
+	}
+
+	public void testForgetsMentionsThatLeftTheWindow() {
+		SlidingWindowCounter window = window();
+		window.add(Arrays.asList("old", "both"), 0);
+		window.add(Arrays.asList("new", "both"), 5000);
+
+		assertEquals(Arrays.asList("both", "new", "old"), names(window.top(5, 9999)));
+		assertEquals(2, window.top(1, 9999).get(0).getCount());
+		assertEquals(Arrays.asList("both", "new"), names(window.top(5, 10000)));
+		assertEquals(1, window.top(1, 10000).get(0).getCount());
+		assertTrue(window.top(5, 15000).isEmpty());
+
+		/* the bucket of the old mentions is reused */
+		window.add(Arrays.asList("newest"), 20000);
+		assertEquals(Arrays.asList("newest"), names(window.top(5, 20000)));
+	}
+}